@@ -0,0 +1,120 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.*;
+import at.fh.hgb.mc.gis.server.OSMLinz;
+import at.fh.hgb.mc.gis.server.OSMServer;
+
+import java.awt.*;
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class compares drawing areas with holes through java.awt.geom.Area subtraction, the way GeoArea.draw()
+ * used to, with drawing their precomputed even-odd paths.
+ * It needs a running OSMLinz database and outputs the time needed to paint all polygons with holes of the
+ * layers consisting of areas.
+ */
+public class AreaPathBenchmark {
+    /**
+     * Layers that are extracted. They contain most of the multipolygons.
+     */
+    private static final String[] LAYERS = {"osm_landuse", "osm_natural", "osm_leisure", "osm_building"};
+    /**
+     * Number of paints per method. The first paint is used as warm up and not measured.
+     */
+    private static final int PAINTS = 6;
+    /**
+     * Width of the image that is painted on.
+     */
+    private static final int WIDTH = 1280;
+    /**
+     * Height of the image that is painted on.
+     */
+    private static final int HEIGHT = 960;
+
+    public static void main(String[] _argv) {
+        OSMServer server = new OSMLinz();
+        List<FeatureStore> batches = new ArrayList<>();
+        for (String layer : LAYERS) {
+            server.extractLayer(layer, null, 0, 2000, batches::add, null);
+        }
+        List<GeoArea> areas = new ArrayList<>();
+        int holes = 0;
+        for (GeoObject geo : FeatureStore.concat(batches).asList()) {
+            for (GeoObjectPart part : geo.getPart()) {
+                if (part instanceof GeoArea && ((GeoArea) part).mHoles != null) {
+                    areas.add((GeoArea) part);
+                    holes += ((GeoArea) part).mHoles.size();
+                }
+            }
+        }
+        if (areas.isEmpty()) {
+            System.out.println("Couldn't extract any polygons with holes from the OSMLinz database.");
+            return;
+        }
+        System.out.printf("%d polygons with %d holes%n", areas.size(), holes);
+
+        Rectangle world = areas.get(0).getBounds();
+        for (GeoArea area : areas) {
+            world.add(area.getBounds());
+        }
+        Transform2D m = new Transform2D(Matrix.zoomToFit(world, new Rectangle(0, 0, WIDTH, HEIGHT - 1), true));
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+        double areaTime = measure(image, "Area subtraction", _g -> {
+            for (GeoArea area : areas) {
+                drawSubtracted(_g, area, m);
+            }
+        });
+        double pathTime = measure(image, "Even-odd path", _g -> {
+            for (GeoArea area : areas) {
+                area.draw(_g, m, Color.BLACK, Color.LIGHT_GRAY);
+            }
+        });
+        System.out.printf("Speedup: %.2fx%n", areaTime / pathTime);
+    }
+
+    /**
+     * Draws the given area like GeoArea.draw() did before it used even-odd paths.
+     *
+     * @param _g    Graphics2D object to draw on.
+     * @param _area Area to draw.
+     * @param _t    Transformation converting the coordinates.
+     */
+    private static void drawSubtracted(Graphics2D _g, GeoArea _area, Transform2D _t) {
+        Area area = new Area(_t.transform(_area.getGeometry()));
+        for (GeoArea hole : _area.mHoles) {
+            area.subtract(new Area(_t.transform(hole.getGeometry())));
+        }
+        _g.setColor(Color.LIGHT_GRAY);
+        _g.fill(area);
+        _g.setColor(Color.BLACK);
+        _g.draw(area);
+    }
+
+    /**
+     * Paints PAINTS times with the given code.
+     *
+     * @param _image Image that is painted on.
+     * @param _name  Name of the method for the console output.
+     * @param _paint Code painting all areas.
+     * @return Average time per measured paint in milliseconds.
+     */
+    private static double measure(BufferedImage _image, String _name, Consumer<Graphics2D> _paint) {
+        long nanos = 0;
+        for (int round = 0; round < PAINTS; round++) {
+            Graphics2D g = _image.createGraphics();
+            g.clearRect(0, 0, WIDTH, HEIGHT);
+            long start = System.nanoTime();
+            _paint.accept(g);
+            long time = System.nanoTime() - start;
+            g.dispose();
+            if (round > 0) nanos += time;
+            System.out.printf("%s paint %d: %d ms%n", _name, round, time / 1000000);
+        }
+        return nanos / 1e6 / (PAINTS - 1);
+    }
+}
@@ -0,0 +1,96 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.Matrix;
+import at.fh.hgb.mc.gis.feature.Transform2D;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * This class measures converting whole coordinate buffers into window coordinates, for workloads of 1, 10 and
+ * 50 million vertices like a fully loaded OSMHawaii. It compares the batch loop of Transform2D over flat int
+ * arrays with converting the same vertices polygon by polygon through Matrix.multiply(Polygon).
+ * The largest workload needs about 1 GB of heap (-Xmx1500m).
+ */
+public class BatchTransformBenchmark {
+    /**
+     * Numbers of vertices of the workloads.
+     */
+    private static final int[] WORKLOADS = {1000000, 10000000, 50000000};
+    /**
+     * Number of vertices converted per call, about the size of a large ring.
+     */
+    private static final int CHUNK = 1000;
+    /**
+     * Number of rounds per workload and method. The first round is used as warm up and not measured.
+     */
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] _argv) {
+        Matrix matrix = Matrix.zoomToFit(new Rectangle(0, 0, 1 << 24, 1 << 24), new Rectangle(0, 0, 1280, 959),
+                true).multiply(Matrix.rotate(0.3));
+        Transform2D transform = new Transform2D(matrix);
+
+        for (int vertices : WORKLOADS) {
+            Random random = new Random(vertices);
+            int[] x = new int[vertices];
+            int[] y = new int[vertices];
+            for (int i = 0; i < vertices; i++) {
+                x[i] = random.nextInt(1 << 24);
+                y[i] = random.nextInt(1 << 24);
+            }
+            int[] outX = new int[vertices];
+            int[] outY = new int[vertices];
+
+            long batchNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                transform.transform(x, y, vertices, outX, outY);
+                if (round > 0) batchNanos += System.nanoTime() - start;
+            }
+            long batchSum = checksum(outX, outY);
+
+            long matrixNanos = 0;
+            int[] chunkX = new int[CHUNK];
+            int[] chunkY = new int[CHUNK];
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int from = 0; from < vertices; from += CHUNK) {
+                    int n = Math.min(CHUNK, vertices - from);
+                    System.arraycopy(x, from, chunkX, 0, n);
+                    System.arraycopy(y, from, chunkY, 0, n);
+                    Polygon result = matrix.multiply(new Polygon(chunkX, chunkY, n));
+                    System.arraycopy(result.xpoints, 0, outX, from, n);
+                    System.arraycopy(result.ypoints, 0, outY, from, n);
+                }
+                if (round > 0) matrixNanos += System.nanoTime() - start;
+            }
+            long matrixSum = checksum(outX, outY);
+
+            double measured = (double) vertices * (ROUNDS - 1);
+            System.out.printf("%,d vertices%n", vertices);
+            System.out.printf("  Transform2D batch:        %6.2f ns per vertex, %7.1f million vertices/s%n",
+                    batchNanos / measured, measured * 1e3 / batchNanos);
+            System.out.printf("  Matrix.multiply(Polygon): %6.2f ns per vertex, %7.1f million vertices/s%n",
+                    matrixNanos / measured, measured * 1e3 / matrixNanos);
+            System.out.printf("  Speedup: %.2fx, same coordinates: %b%n", (double) matrixNanos / batchNanos,
+                    batchSum == matrixSum);
+        }
+    }
+
+    /**
+     * Adds up the given coordinates, so the results of both methods can be compared.
+     *
+     * @param _x X coordinates.
+     * @param _y Y coordinates.
+     * @return The checksum.
+     */
+    private static long checksum(int[] _x, int[] _y) {
+        long sum = 0;
+        for (int i = 0; i < _x.length; i++) {
+            sum = 31 * sum + _x[i];
+            sum = 31 * sum + _y[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,66 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.GeoObject;
+import at.fh.hgb.mc.gis.server.OSMLinz;
+import at.fh.hgb.mc.gis.server.OSMServer;
+
+import java.util.List;
+
+/**
+ * This class compares the WKT based and the WKB based decoding of OSMServer.extractData().
+ * It needs a running OSMLinz database and outputs the decoded rows per second to the console.
+ */
+public class DecodingBenchmark {
+    /**
+     * Tables that are extracted in every round.
+     */
+    private static final String[] TABLES = {"osm_highway", "osm_waterway", "osm_railway", "osm_leisure",
+            "osm_place", "osm_landuse", "osm_natural", "osm_building"};
+    /**
+     * Number of rounds per decoding mode. The first round is used as warm up and not measured.
+     */
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] _argv) {
+        OSMServer server = new OSMLinz();
+        if (!server.init()) {
+            System.out.println("Couldn't connect to the OSMLinz database.");
+            return;
+        }
+        double text = measure(server, false);
+        double binary = measure(server, true);
+        server.closeConnection();
+
+        System.out.printf("WKT decoding: %.0f rows/s%n", text);
+        System.out.printf("WKB decoding: %.0f rows/s%n", binary);
+        System.out.printf("Speedup:      %.2fx%n", binary / text);
+    }
+
+    /**
+     * Extracts all TABLES ROUNDS times with the given decoding mode.
+     *
+     * @param _server Server to extract from. The connection is kept open.
+     * @param _binary Decoding mode to measure.
+     * @return Decoded rows per second, without the warm up round.
+     */
+    private static double measure(OSMServer _server, boolean _binary) {
+        _server.setBinaryDecoding(_binary);
+        long rows = 0;
+        long nanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long count = 0;
+            for (String table : TABLES) {
+                List<GeoObject> data = _server.extractData("SELECT * FROM " + table, true);
+                count += data.size();
+            }
+            long time = System.nanoTime() - start;
+            if (round > 0) {
+                rows += count;
+                nanos += time;
+            }
+            System.out.printf("%s round %d: %d rows in %d ms%n", _binary ? "WKB" : "WKT", round, count, time / 1000000);
+        }
+        return rows / (nanos / 1e9);
+    }
+}
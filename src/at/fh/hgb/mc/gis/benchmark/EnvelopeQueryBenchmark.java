@@ -0,0 +1,95 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.server.OSMLinz;
+import at.fh.hgb.mc.gis.server.OSMServer;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * This class compares concatenated, unprepared bounding box queries with the prepared statements of
+ * OSMServer.extractLayer(). It needs a running OSMLinz database and outputs the average latency per query.
+ */
+public class EnvelopeQueryBenchmark {
+    /**
+     * Table the viewport queries are run against.
+     */
+    private static final String TABLE = "osm_building";
+    /**
+     * Number of measured queries per variant.
+     */
+    private static final int QUERIES = 500;
+    /**
+     * Number of queries per variant that are run as warm up before measuring.
+     */
+    private static final int WARM_UP = 50;
+    /**
+     * Extent (in map units) of the viewports that are queried.
+     */
+    private static final int VIEWPORT_SIZE = 500;
+
+    public static void main(String[] _argv) {
+        OSMServer server = new OSMLinz();
+        if (!server.init()) {
+            System.out.println("Couldn't connect to the OSMLinz database.");
+            return;
+        }
+        Rectangle extent = server.getExtent();
+        if (extent == null) {
+            System.out.println("Couldn't determine the extent of the OSMLinz database.");
+            return;
+        }
+        Rectangle[] viewports = createViewports(extent, WARM_UP + QUERIES);
+
+        double unprepared = measure(server, viewports, false);
+        double prepared = measure(server, viewports, true);
+        server.closeConnection();
+
+        System.out.printf("unprepared: %.3f ms/query%n", unprepared);
+        System.out.printf("prepared:   %.3f ms/query%n", prepared);
+        System.out.printf("saved:      %.3f ms/query%n", unprepared - prepared);
+    }
+
+    /**
+     * Creates random viewports within the given extent.
+     *
+     * @param _extent Extent of the data.
+     * @param _count  Number of viewports to create.
+     * @return The viewports.
+     */
+    private static Rectangle[] createViewports(Rectangle _extent, int _count) {
+        Random random = new Random(42);
+        Rectangle[] result = new Rectangle[_count];
+        for (int i = 0; i < _count; i++) {
+            int x = _extent.x + random.nextInt(Math.max(1, _extent.width - VIEWPORT_SIZE));
+            int y = _extent.y + random.nextInt(Math.max(1, _extent.height - VIEWPORT_SIZE));
+            result[i] = new Rectangle(x, y, VIEWPORT_SIZE, VIEWPORT_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a query for every viewport.
+     *
+     * @param _server    Server to query, initialized.
+     * @param _viewports Viewports to query, the first WARM_UP are not measured.
+     * @param _prepared  True to use extractLayer(), false to concatenate the envelope into the statement.
+     * @return Average time per measured query in milliseconds.
+     */
+    private static double measure(OSMServer _server, Rectangle[] _viewports, boolean _prepared) {
+        long nanos = 0;
+        for (int i = 0; i < _viewports.length; i++) {
+            Rectangle v = _viewports[i];
+            long start = System.nanoTime();
+            if (_prepared) {
+                _server.extractLayer(TABLE, v, 0, 0, _batch -> {
+                }, null);
+            } else {
+                _server.extractData("SELECT * FROM " + TABLE + " WHERE ST_Intersects(geom, ST_MakeEnvelope("
+                        + v.getMinX() + ", " + v.getMinY() + ", " + v.getMaxX() + "," + v.getMaxY() + "))", true);
+            }
+            if (i >= WARM_UP) nanos += System.nanoTime() - start;
+        }
+        return nanos / 1e6 / (_viewports.length - WARM_UP);
+    }
+}
@@ -0,0 +1,168 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.client.OSMDrawingContext;
+import at.fh.hgb.mc.gis.feature.*;
+import at.fh.hgb.mc.gis.server.OSMLinz;
+import at.fh.hgb.mc.gis.server.OSMServer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class compares a List of GeoObjects with a FeatureStore holding the same data.
+ * It needs a running OSMLinz database and outputs the heap used by both representations, and by a FeatureStore
+ * whose coordinates are held off-heap, and the time needed to paint them the way GISModel.repaint() does.
+ * It also outputs the size of the compressed coordinates compared to plain ints and how fast they are decoded.
+ */
+public class FeatureStoreBenchmark {
+    /**
+     * Number of paints per representation. The first paint is used as warm up and not measured.
+     */
+    private static final int PAINTS = 6;
+    /**
+     * Width of the image that is painted on.
+     */
+    private static final int WIDTH = 1280;
+    /**
+     * Height of the image that is painted on.
+     */
+    private static final int HEIGHT = 960;
+    /**
+     * Number of times all rings are decoded. The first pass is used as warm up and not measured.
+     */
+    private static final int DECODES = 11;
+
+    public static void main(String[] _argv) {
+        OSMServer server = new OSMLinz();
+        long before = usedHeap();
+        List<FeatureStore> batches = new ArrayList<>();
+        for (String layer : server.getLayers()) {
+            server.extractLayer(layer, null, 0, 2000, batches::add, null);
+        }
+        FeatureStore store = FeatureStore.concat(batches);
+        batches = null;
+        long storeBytes = usedHeap() - before;
+        if (store.size() == 0) {
+            System.out.println("Couldn't extract any data from the OSMLinz database.");
+            return;
+        }
+
+        before = usedHeap();
+        List<GeoObject> objects = new ArrayList<>(store.asList());
+        long objectBytes = usedHeap() - before;
+
+        before = usedHeap();
+        FeatureStore.setOffHeap(true);
+        FeatureStore.Builder builder = new FeatureStore.Builder();
+        builder.addAll(store);
+        FeatureStore offHeap = builder.build();
+        builder = null;
+        FeatureStore.setOffHeap(false);
+        long offHeapBytes = usedHeap() - before;
+
+        System.out.printf("%d objects%n", store.size());
+        System.out.printf("List<GeoObject>:         %.1f MB heap%n", objectBytes / 1e6);
+        System.out.printf("FeatureStore:            %.1f MB heap%n", storeBytes / 1e6);
+        System.out.printf("FeatureStore (off-heap): %.1f MB heap%n", offHeapBytes / 1e6);
+        measureDecoding(store);
+
+        Rectangle world = store.getBounds();
+        Transform2D m = new Transform2D(Matrix.zoomToFit(world, new Rectangle(0, 0, WIDTH, HEIGHT - 1), true));
+        ADrawingContext context = new OSMDrawingContext();
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+        double objectTime = measure(image, "List<GeoObject>", _g -> {
+            for (GeoObject geo : objects) {
+                PresentationSchema schema = context.getSchema(geo.getType());
+                if (schema != null) schema.paint(_g, geo, m);
+            }
+        });
+        double storeTime = measure(image, "FeatureStore", _g -> {
+            for (int i = 0; i < store.size(); i++) {
+                PresentationSchema schema = context.getSchema(store.getType(i));
+                if (schema != null) schema.paint(_g, store, i, m);
+            }
+        });
+        double offHeapTime = measure(image, "FeatureStore (off-heap)", _g -> {
+            for (int i = 0; i < offHeap.size(); i++) {
+                PresentationSchema schema = context.getSchema(offHeap.getType(i));
+                if (schema != null) schema.paint(_g, offHeap, i, m);
+            }
+        });
+        System.out.printf("Speedup:                 %.2fx%n", objectTime / storeTime);
+        System.out.printf("Speedup (off-heap):      %.2fx%n", objectTime / offHeapTime);
+    }
+
+    /**
+     * Paints PAINTS times with the given code.
+     *
+     * @param _image Image that is painted on.
+     * @param _name  Name of the representation for the console output.
+     * @param _paint Code painting all objects.
+     * @return Average time per measured paint in milliseconds.
+     */
+    private static double measure(BufferedImage _image, String _name, Consumer<Graphics2D> _paint) {
+        long nanos = 0;
+        for (int round = 0; round < PAINTS; round++) {
+            Graphics2D g = _image.createGraphics();
+            g.clearRect(0, 0, WIDTH, HEIGHT);
+            long start = System.nanoTime();
+            _paint.accept(g);
+            long time = System.nanoTime() - start;
+            g.dispose();
+            if (round > 0) nanos += time;
+            System.out.printf("%s paint %d: %d ms%n", _name, round, time / 1000000);
+        }
+        return nanos / 1e6 / (PAINTS - 1);
+    }
+
+    /**
+     * Decodes all rings of the store DECODES times and outputs the size of the compressed coordinates
+     * and the decoded vertices per second.
+     *
+     * @param _store Store to decode.
+     */
+    private static void measureDecoding(FeatureStore _store) {
+        int[] vertexOffsets = _store.getVertexOffsets();
+        int rings = vertexOffsets.length - 1;
+        long vertices = vertexOffsets[rings];
+        int maxRing = 0;
+        for (int r = 0; r < rings; r++) {
+            maxRing = Math.max(maxRing, vertexOffsets[r + 1] - vertexOffsets[r]);
+        }
+        int[] x = new int[maxRing];
+        int[] y = new int[maxRing];
+        long bytes = _store.getRingBytes()[rings];
+        System.out.printf("%d vertices in %.1f MB (%.2f bytes per vertex, %.1fx smaller than plain ints)%n",
+                vertices, bytes / 1e6, (double) bytes / vertices, 8.0 * vertices / bytes);
+
+        long nanos = 0;
+        long checksum = 0;
+        for (int round = 0; round < DECODES; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < rings; r++) {
+                int n = _store.getRing(r, x, y);
+                if (n > 0) checksum += x[n - 1] ^ y[n - 1];
+            }
+            if (round > 0) nanos += System.nanoTime() - start;
+        }
+        System.out.printf("Decoding: %.1f million vertices per second (checksum %d)%n",
+                vertices * (DECODES - 1) * 1e3 / nanos, checksum);
+    }
+
+    /**
+     * Provides the heap currently in use, after asking for a garbage collection.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,168 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.FeatureStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class checks that the zig-zag varint delta coding of FeatureStore gives back the coordinates that were
+ * added. It encodes random features with negative coordinates, the extremes of int, deltas across the whole int
+ * range, empty rings and several parts and rings per feature, decodes them with getRing() and compares them.
+ * The same is done for stores copied with Builder.add(FeatureStore, int) and FeatureStore.concat(), on-heap and
+ * off-heap. It needs no database and exits with status 1 if any coordinate differs.
+ */
+public class FeatureStoreCodingCheck {
+    /**
+     * Number of random features per store.
+     */
+    private static final int FEATURES = 2000;
+    /**
+     * Coordinates that are mixed into the random ones, so the largest deltas are encoded as well.
+     */
+    private static final int[] EXTREMES = {0, 1, -1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1};
+
+    public static void main(String[] _argv) {
+        int failures = 0;
+        for (boolean offHeap : new boolean[]{false, true}) {
+            FeatureStore.setOffHeap(offHeap);
+            Random random = new Random(42);
+            List<int[][][]> features = new ArrayList<>();
+            FeatureStore.Builder builder = new FeatureStore.Builder();
+            for (int i = 0; i < FEATURES; i++) {
+                int[][][] feature = createFeature(random);
+                features.add(feature);
+                add(builder, i, feature);
+            }
+            FeatureStore store = builder.build();
+            failures += check(offHeap ? "off-heap built" : "built", store, features);
+
+            /* Copies every feature on its own into a store in reversed order. */
+            FeatureStore.Builder copy = new FeatureStore.Builder();
+            for (int i = store.size() - 1; i >= 0; i--) {
+                copy.add(store, i);
+            }
+            FeatureStore reversed = copy.build();
+            List<int[][][]> reversedFeatures = new ArrayList<>(features);
+            Collections.reverse(reversedFeatures);
+            failures += check(offHeap ? "off-heap copied" : "copied", reversed, reversedFeatures);
+
+            /* Concatenates the store with its reversed copy, so the second half starts at a byte offset != 0. */
+            FeatureStore concat = FeatureStore.concat(Arrays.asList(store, reversed));
+            List<int[][][]> concatFeatures = new ArrayList<>(features);
+            concatFeatures.addAll(reversedFeatures);
+            failures += check(offHeap ? "off-heap concatenated" : "concatenated", concat, concatFeatures);
+        }
+        FeatureStore.setOffHeap(false);
+        if (failures > 0) {
+            System.out.printf("%d checks failed%n", failures);
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * Creates the geometry of a random feature: up to three parts of up to three rings of up to twelve vertices.
+     * Parts and rings may be empty. A quarter of the coordinates is taken from EXTREMES, the others are small
+     * steps around a random, possibly negative origin.
+     *
+     * @param _random Source of the coordinates.
+     * @return Parts, rings and vertices of the feature, every ring as {x coordinates, y coordinates}.
+     */
+    private static int[][][] createFeature(Random _random) {
+        int[][][] parts = new int[_random.nextInt(4)][][];
+        int originX = _random.nextInt();
+        int originY = _random.nextInt();
+        for (int p = 0; p < parts.length; p++) {
+            int rings = _random.nextInt(4);
+            parts[p] = new int[2 * rings][];
+            for (int r = 0; r < rings; r++) {
+                int n = _random.nextInt(13);
+                int[] x = new int[n];
+                int[] y = new int[n];
+                for (int v = 0; v < n; v++) {
+                    x[v] = coordinate(_random, originX);
+                    y[v] = coordinate(_random, originY);
+                }
+                parts[p][2 * r] = x;
+                parts[p][2 * r + 1] = y;
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Creates a random coordinate.
+     *
+     * @param _random Source of the coordinate.
+     * @param _origin Coordinate the small steps are taken around.
+     * @return One of EXTREMES or a coordinate near the origin.
+     */
+    private static int coordinate(Random _random, int _origin) {
+        if (_random.nextInt(4) == 0) return EXTREMES[_random.nextInt(EXTREMES.length)];
+        return _origin + _random.nextInt(2001) - 1000;
+    }
+
+    /**
+     * Adds the given geometry as new feature.
+     *
+     * @param _builder Builder to add to.
+     * @param _index   Index of the feature, used as id.
+     * @param _feature Parts, rings and vertices of the feature.
+     */
+    private static void add(FeatureStore.Builder _builder, int _index, int[][][] _feature) {
+        _builder.beginFeature(Integer.toString(_index), _index, FeatureStore.KIND_MULTIPOLYGON, null);
+        for (int[][] part : _feature) {
+            _builder.beginPart();
+            for (int r = 0; r < part.length; r += 2) {
+                _builder.beginRing();
+                for (int v = 0; v < part[r].length; v++) {
+                    _builder.addVertex(part[r][v], part[r + 1][v]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes all rings of the given store and compares them with the geometries they were created from.
+     *
+     * @param _name     Name of the store in the output.
+     * @param _store    Store to check.
+     * @param _features Expected geometries of the features of the store.
+     * @return The number of features whose structure or coordinates differ.
+     */
+    private static int check(String _name, FeatureStore _store, List<int[][][]> _features) {
+        int failed = 0;
+        if (_store.size() != _features.size()) {
+            System.out.printf("%s: %d features instead of %d%n", _name, _store.size(), _features.size());
+            return 1;
+        }
+        int[] partOffsets = _store.getPartOffsets();
+        int[] ringOffsets = _store.getRingOffsets();
+        int[] x = new int[16];
+        int[] y = new int[16];
+        for (int i = 0; i < _store.size(); i++) {
+            int[][][] feature = _features.get(i);
+            boolean equal = partOffsets[i + 1] - partOffsets[i] == feature.length;
+            for (int p = 0; equal && p < feature.length; p++) {
+                int part = partOffsets[i] + p;
+                equal = ringOffsets[part + 1] - ringOffsets[part] == feature[p].length / 2;
+                for (int r = 0; equal && r < feature[p].length; r += 2) {
+                    int n = _store.getRing(ringOffsets[part] + r / 2, x, y);
+                    equal = Arrays.equals(Arrays.copyOf(x, n), feature[p][r])
+                            && Arrays.equals(Arrays.copyOf(y, n), feature[p][r + 1]);
+                }
+            }
+            if (!equal) {
+                System.out.printf("%s: feature %d differs%n", _name, i);
+                failed++;
+            }
+        }
+        System.out.printf("%-22s %d features, %d failed%n", _name + ":", _store.size(), failed);
+        return failed;
+    }
+}
@@ -0,0 +1,162 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class measures the speedup of drawing the map image in tiles with MapRenderer over drawing it serially,
+ * for 1, 2, 4, ... threads up to the number of available cores, but at least 2. It draws random areas, lines and
+ * points, so it doesn't need a database. Tiles are used at every zoom, also for frames with few features.
+ * Every parallel image has to be identical to the serial one, otherwise the benchmark exits with status 1.
+ */
+public class ParallelRenderBenchmark {
+    /**
+     * Number of features of the map.
+     */
+    private static final int FEATURES = 60000;
+    /**
+     * Size of the map in map units.
+     */
+    private static final int MAP_SIZE = 10000000;
+    /**
+     * Width of the image that is painted on.
+     */
+    private static final int WIDTH = 1920;
+    /**
+     * Height of the image that is painted on.
+     */
+    private static final int HEIGHT = 1080;
+    /**
+     * Zoom factors of the measured views, from the whole map to a detail whose lines cross many tiles.
+     */
+    private static final double[] ZOOMS = {1, 8, 64, 512};
+    /**
+     * Number of paints per thread count. The first paints are used as warm up and not measured.
+     */
+    private static final int PAINTS = 8;
+    /**
+     * Number of warm up paints per thread count.
+     */
+    private static final int WARM_UP = 3;
+
+    public static void main(String[] _argv) {
+        FeatureStore store = createStore();
+        STRTree index = new STRTree(store);
+        ADrawingContext context = new ADrawingContext() {
+            @Override
+            protected void initSchemata() {
+                mContext.put(0, new PresentationSchema(Color.DARK_GRAY, Color.LIGHT_GRAY, 1.0f));
+                mContext.put(1, new PresentationSchema(Color.BLUE, Color.CYAN, 1.0f));
+                mContext.put(2, new PresentationSchema(Color.RED, Color.ORANGE, 1.5f));
+            }
+        };
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        MapRenderer renderer = new MapRenderer();
+        renderer.setMinTiledFeatures(0);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        /* The tiles are also checked on a single core. */
+        int maxThreads = Math.max(2, cores);
+        boolean identical = true;
+        System.out.printf("%d features, %dx%d pixels, %d cores%n", FEATURES, WIDTH, HEIGHT, cores);
+        for (double zoom : ZOOMS) {
+            Transform2D transform = new Transform2D(Matrix.zoomToFit(new Rectangle(0, 0, MAP_SIZE, MAP_SIZE),
+                    new Rectangle(0, 0, WIDTH - 1, HEIGHT - 1), true));
+            transform.rotate(0.2, MAP_SIZE / 2.0, MAP_SIZE / 2.0);
+            transform.scale(zoom, WIDTH / 2.0, HEIGHT / 2.0);
+            System.out.printf("Zoom %.0f%n", zoom);
+            int[] serial = null;
+            double serialTime = 0;
+            for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+                renderer.setParallelism(threads);
+                long nanos = 0;
+                for (int paint = 0; paint < PAINTS; paint++) {
+                    Graphics2D g = image.createGraphics();
+                    g.clearRect(0, 0, WIDTH, HEIGHT);
+                    g.dispose();
+                    long start = System.nanoTime();
+                    renderer.render(image, store, index, context, transform);
+                    if (paint >= WARM_UP) nanos += System.nanoTime() - start;
+                }
+                double time = nanos / 1e6 / (PAINTS - WARM_UP);
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+                if (serial == null) {
+                    serial = pixels;
+                    serialTime = time;
+                }
+                boolean equal = Arrays.equals(serial, pixels);
+                identical &= equal;
+                System.out.printf("  %2d threads: %7.1f ms per paint, speedup %5.2fx, identical to serial: %b%n",
+                        threads, time, serialTime / time, equal);
+                if (threads == maxThreads) break;
+            }
+        }
+        renderer.setParallelism(1);
+        if (!identical) {
+            System.out.println("The tiled images differ from the serial ones.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a map of random areas with holes, lines and points.
+     *
+     * @return The new FeatureStore.
+     */
+    private static FeatureStore createStore() {
+        Random random = new Random(42);
+        FeatureStore.Builder builder = new FeatureStore.Builder();
+        for (int i = 0; i < FEATURES; i++) {
+            int x = random.nextInt(MAP_SIZE);
+            int y = random.nextInt(MAP_SIZE);
+            int radius = 2000 + random.nextInt(60000);
+            switch (i % 3) {
+                case 0: {
+                    builder.beginFeature("a" + i, 0, FeatureStore.KIND_POLYGON, null);
+                    builder.beginPart();
+                    addCircle(builder, x, y, radius, 60);
+                    addCircle(builder, x, y, radius / 3, 20);
+                }
+                break;
+                case 1: {
+                    builder.beginFeature("l" + i, 1, FeatureStore.KIND_LINE, null);
+                    builder.beginPart();
+                    builder.beginRing();
+                    for (int v = 0; v < 40; v++) {
+                        builder.addVertex(x + v * radius / 20, y + random.nextInt(radius) - radius / 2);
+                    }
+                }
+                break;
+                default: {
+                    builder.beginFeature("p" + i, 2, FeatureStore.KIND_POINT, null);
+                    builder.beginPart();
+                    builder.beginRing();
+                    builder.addVertex(x, y);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adds a closed ring approximating a circle to the current part of the builder.
+     *
+     * @param _builder  Builder to add the ring to.
+     * @param _x        X coordinate of the centre.
+     * @param _y        Y coordinate of the centre.
+     * @param _radius   Radius of the circle.
+     * @param _vertices Number of vertices of the ring without the closing one.
+     */
+    private static void addCircle(FeatureStore.Builder _builder, int _x, int _y, int _radius, int _vertices) {
+        _builder.beginRing();
+        for (int v = 0; v <= _vertices; v++) {
+            double angle = 2 * Math.PI * v / _vertices;
+            _builder.addVertex(_x + (int) (_radius * Math.cos(angle)), _y + (int) (_radius * Math.sin(angle)));
+        }
+    }
+}
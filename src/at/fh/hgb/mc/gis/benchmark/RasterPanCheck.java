@@ -0,0 +1,162 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+/**
+ * This class checks that panning a RasterLayer gives the same pixels as drawing the whole layer again.
+ * At several zooms it pans one layer by a sequence of whole pixel pans, which move its image and draw the uncovered
+ * strips, and after every pan compares the composed window with that of a new layer drawn completely with the same
+ * view. The map consists of random areas, lines and points, partly with wide strokes, whose segments cross the
+ * border of the image at the higher zooms. It needs no database and exits with status 1 if any pixel differs.
+ */
+public class RasterPanCheck {
+    /**
+     * Number of features of the map.
+     */
+    private static final int FEATURES = 30000;
+    /**
+     * Size of the map in map units.
+     */
+    private static final int MAP_SIZE = 10000000;
+    /**
+     * Width of the window.
+     */
+    private static final int WIDTH = 1280;
+    /**
+     * Height of the window.
+     */
+    private static final int HEIGHT = 720;
+    /**
+     * Zoom factors of the checked views, from the whole map to a detail whose segments are much longer than the
+     * window.
+     */
+    private static final double[] ZOOMS = {1, 8, 64, 256, 512, 4096};
+    /**
+     * Pans in pixels applied one after another, as x and y distance.
+     */
+    private static final int[][] PANS = {{37, 0}, {0, -53}, {-120, 80}, {5, 5}, {-300, -7}, {1, 0}, {0, 1},
+            {-1, -1}, {640, 0}};
+
+    public static void main(String[] _argv) {
+        FeatureStore store = createStore();
+        STRTree index = new STRTree(store);
+        ADrawingContext context = new ADrawingContext() {
+            @Override
+            protected void initSchemata() {
+                mContext.put(0, new PresentationSchema(Color.DARK_GRAY, Color.LIGHT_GRAY, 1.0f));
+                mContext.put(1, new PresentationSchema(Color.BLUE, Color.CYAN, 1.0f));
+                mContext.put(2, new PresentationSchema(Color.RED, Color.ORANGE, 1.5f));
+            }
+        };
+        MapRenderer renderer = new MapRenderer();
+        ILayerPainter painter = (_image, _t, _region) ->
+                renderer.render(_image, store, index, context, _t, 0, store.size(), _region);
+
+        int failures = 0;
+        for (double zoom : ZOOMS) {
+            Transform2D transform = new Transform2D(Matrix.zoomToFit(new Rectangle(0, 0, MAP_SIZE, MAP_SIZE),
+                    new Rectangle(0, 0, WIDTH - 1, HEIGHT - 1), true));
+            transform.rotate(0.2, MAP_SIZE / 2.0, MAP_SIZE / 2.0);
+            transform.scale(zoom, WIDTH / 2.0, HEIGHT / 2.0);
+            RasterLayer panned = new RasterLayer(painter);
+            panned.update(WIDTH, HEIGHT, transform);
+            int differing = 0;
+            long repainted = 0;
+            for (int[] pan : PANS) {
+                transform.translate(pan[0], pan[1]);
+                repainted += panned.update(WIDTH, HEIGHT, transform);
+                RasterLayer full = new RasterLayer(painter);
+                full.update(WIDTH, HEIGHT, transform);
+                differing += compare(panned, full);
+            }
+            System.out.printf("zoom %5.0f: %d pans, %d pixels drawn again, %d pixels differ%n", zoom, PANS.length,
+                    repainted, differing);
+            if (differing > 0) failures++;
+        }
+        if (failures > 0) {
+            System.out.printf("%d zooms failed%n", failures);
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * Composes both layers into a window each and counts the pixels that differ.
+     *
+     * @param _a First layer.
+     * @param _b Second layer.
+     * @return The number of differing pixels of the window.
+     */
+    private static int compare(RasterLayer _a, RasterLayer _b) {
+        int[] a = compose(_a);
+        int[] b = compose(_b);
+        int differing = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) differing++;
+        }
+        return differing;
+    }
+
+    /**
+     * Composes the given layer into a new, transparent window.
+     *
+     * @param _layer Layer to compose.
+     * @return The pixels of the window, row by row.
+     */
+    private static int[] compose(RasterLayer _layer) {
+        BufferedImage window = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = window.createGraphics();
+        _layer.compose(g);
+        g.dispose();
+        return ((DataBufferInt) window.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Creates a map of random areas, lines and points.
+     *
+     * @return The new FeatureStore.
+     */
+    private static FeatureStore createStore() {
+        Random random = new Random(42);
+        FeatureStore.Builder builder = new FeatureStore.Builder();
+        for (int i = 0; i < FEATURES; i++) {
+            int x = random.nextInt(MAP_SIZE);
+            int y = random.nextInt(MAP_SIZE);
+            int radius = 2000 + random.nextInt(60000);
+            int type = random.nextInt(3);
+            switch (i % 3) {
+                case 0: {
+                    builder.beginFeature("a" + i, type, FeatureStore.KIND_POLYGON, null);
+                    builder.beginPart();
+                    builder.beginRing();
+                    for (int v = 0; v <= 12; v++) {
+                        double angle = 2 * Math.PI * v / 12;
+                        builder.addVertex(x + (int) (radius * Math.cos(angle)), y + (int) (radius * Math.sin(angle)));
+                    }
+                }
+                break;
+                case 1: {
+                    builder.beginFeature("l" + i, type, FeatureStore.KIND_LINE, null);
+                    builder.beginPart();
+                    builder.beginRing();
+                    for (int v = 0; v < 10; v++) {
+                        builder.addVertex(x + v * radius / 5, y + random.nextInt(radius) - radius / 2);
+                    }
+                }
+                break;
+                default: {
+                    builder.beginFeature("p" + i, type, FeatureStore.KIND_POINT, null);
+                    builder.beginPart();
+                    builder.beginRing();
+                    builder.addVertex(x, y);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
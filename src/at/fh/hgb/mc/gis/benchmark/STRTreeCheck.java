@@ -0,0 +1,153 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.FeatureStore;
+import at.fh.hgb.mc.gis.feature.STRTree;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class checks the queries of STRTree against a linear scan over the bounding boxes of the features.
+ * It builds random stores of different sizes, including features without vertices and negative coordinates,
+ * and compares the results of random window and point queries. It needs no database, outputs the number of
+ * checked queries per store and exits with status 1 if any query differs.
+ */
+public class STRTreeCheck {
+    /**
+     * Numbers of features of the checked stores. 0, 1 and 17 cover an empty tree, a single leaf and a tree with
+     * just more entries than fit into one node.
+     */
+    private static final int[] SIZES = {0, 1, 16, 17, 256, 257, 5000};
+    /**
+     * Number of window and of point queries per store.
+     */
+    private static final int QUERIES = 2000;
+    /**
+     * Extent (in map units) of the area the features are placed in, centred on the origin.
+     */
+    private static final int EXTENT = 100000;
+    /**
+     * Maximal extent (in map units) of a single feature.
+     */
+    private static final int FEATURE_SIZE = 5000;
+
+    public static void main(String[] _argv) {
+        Random random = new Random(42);
+        int failures = 0;
+        for (int size : SIZES) {
+            FeatureStore store = createStore(random, size);
+            STRTree tree = new STRTree(store);
+            int[] bounds = store.getBoundsColumn();
+            int failed = 0;
+
+            int withVertices = 0;
+            for (int i = 0; i < store.size(); i++) {
+                if (bounds[4 * i] <= bounds[4 * i + 2]) withVertices++;
+            }
+            if (tree.size() != withVertices) {
+                System.out.printf("size %d: tree holds %d features instead of %d%n", size, tree.size(), withVertices);
+                failed++;
+            }
+
+            for (int q = 0; q < QUERIES; q++) {
+                Rectangle window = new Rectangle(random.nextInt(2 * EXTENT) - EXTENT,
+                        random.nextInt(2 * EXTENT) - EXTENT, random.nextInt(4 * FEATURE_SIZE),
+                        random.nextInt(4 * FEATURE_SIZE));
+                int[] expected = scan(bounds, store.size(), window.x, window.y, window.x + window.width,
+                        window.y + window.height);
+                int[] actual = tree.query(window);
+                if (!Arrays.equals(expected, actual)) {
+                    System.out.printf("size %d: window %s found %d features instead of %d%n", size, window,
+                            actual.length, expected.length);
+                    failed++;
+                }
+
+                /* Half of the points are corners of features, so the borders are checked as well. */
+                int x;
+                int y;
+                if (withVertices > 0 && random.nextBoolean()) {
+                    int i = random.nextInt(store.size());
+                    while (bounds[4 * i] > bounds[4 * i + 2]) i = (i + 1) % store.size();
+                    x = bounds[4 * i + 2 * random.nextInt(2)];
+                    y = bounds[4 * i + 1 + 2 * random.nextInt(2)];
+                } else {
+                    x = random.nextInt(2 * EXTENT) - EXTENT;
+                    y = random.nextInt(2 * EXTENT) - EXTENT;
+                }
+                expected = scan(bounds, store.size(), x, y, x, y);
+                actual = tree.query(x, y);
+                if (!Arrays.equals(expected, actual)) {
+                    System.out.printf("size %d: point (%d, %d) found %d features instead of %d%n", size, x, y,
+                            actual.length, expected.length);
+                    failed++;
+                }
+            }
+            System.out.printf("%5d features: %d queries, %d failed%n", size, 2 * QUERIES, failed);
+            failures += failed;
+        }
+        if (failures > 0) {
+            System.out.printf("%d checks failed%n", failures);
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * Creates a store of random lines and polygons. Every tenth feature has no vertices: it either has no parts
+     * at all or only an empty ring.
+     *
+     * @param _random Source of the coordinates.
+     * @param _size   Number of features.
+     * @return The new store.
+     */
+    private static FeatureStore createStore(Random _random, int _size) {
+        FeatureStore.Builder builder = new FeatureStore.Builder();
+        for (int i = 0; i < _size; i++) {
+            boolean polygon = _random.nextBoolean();
+            builder.beginFeature(Integer.toString(i), 0,
+                    polygon ? FeatureStore.KIND_POLYGON : FeatureStore.KIND_LINE, null);
+            if (i % 10 == 9) {
+                if (_random.nextBoolean()) {
+                    builder.beginPart();
+                    builder.beginRing();
+                }
+                continue;
+            }
+            builder.beginPart();
+            builder.beginRing();
+            int x = _random.nextInt(2 * EXTENT) - EXTENT;
+            int y = _random.nextInt(2 * EXTENT) - EXTENT;
+            int vertices = 1 + _random.nextInt(8);
+            for (int v = 0; v < vertices; v++) {
+                builder.addVertex(x + _random.nextInt(FEATURE_SIZE), y + _random.nextInt(FEATURE_SIZE));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Finds the features whose bounding boxes intersect the given box, borders included, by testing all of them.
+     *
+     * @param _bounds Bounding boxes of the features as returned by FeatureStore.getBoundsColumn().
+     * @param _count  Number of features.
+     * @param _minX   Left border of the box.
+     * @param _minY   Upper border of the box.
+     * @param _maxX   Right border of the box.
+     * @param _maxY   Lower border of the box.
+     * @return Indices of the features in ascending order.
+     */
+    private static int[] scan(int[] _bounds, int _count, int _minX, int _minY, int _maxX, int _maxY) {
+        int[] result = new int[_count];
+        int found = 0;
+        for (int i = 0; i < _count; i++) {
+            int b = 4 * i;
+            if (_bounds[b] > _bounds[b + 2]) continue;
+            if (_bounds[b] > _maxX || _bounds[b + 1] > _maxY || _bounds[b + 2] < _minX || _bounds[b + 3] < _minY) {
+                continue;
+            }
+            result[found++] = i;
+        }
+        return Arrays.copyOf(result, found);
+    }
+}
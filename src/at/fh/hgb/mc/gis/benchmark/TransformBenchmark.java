@@ -0,0 +1,89 @@
+package at.fh.hgb.mc.gis.benchmark;
+
+import at.fh.hgb.mc.gis.feature.Matrix;
+import at.fh.hgb.mc.gis.feature.Transform2D;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * This class compares converting polygons into window coordinates with Matrix.multiply(Polygon) and with
+ * Transform2D converting into reused buffers. It works on random polygons, so it doesn't need a database,
+ * and outputs the time per vertex of both and whether they produce the same coordinates.
+ */
+public class TransformBenchmark {
+    /**
+     * Number of polygons that are converted per round.
+     */
+    private static final int POLYGONS = 20000;
+    /**
+     * Number of vertices of every polygon.
+     */
+    private static final int VERTICES = 50;
+    /**
+     * Number of rounds per method. The first rounds are used as warm up and not measured.
+     */
+    private static final int ROUNDS = 10;
+    /**
+     * Number of warm up rounds per method.
+     */
+    private static final int WARM_UP = 3;
+
+    public static void main(String[] _argv) {
+        Random random = new Random(42);
+        Polygon[] polygons = new Polygon[POLYGONS];
+        for (int i = 0; i < POLYGONS; i++) {
+            Polygon polygon = new Polygon();
+            int x = random.nextInt(10000000);
+            int y = random.nextInt(10000000);
+            for (int v = 0; v < VERTICES; v++) {
+                polygon.addPoint(x + random.nextInt(2000), y + random.nextInt(2000));
+            }
+            polygons[i] = polygon;
+        }
+        Matrix matrix = Matrix.zoomToFit(new Rectangle(0, 0, 10002000, 10002000), new Rectangle(0, 0, 1280, 959),
+                true).multiply(Matrix.rotate(0.3));
+        Transform2D transform = new Transform2D(matrix);
+
+        /* Both methods add up the converted coordinates, so the work can't be optimised away. */
+        long matrixSum = 0;
+        long matrixNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (Polygon polygon : polygons) {
+                Polygon result = matrix.multiply(polygon);
+                for (int v = 0; v < result.npoints; v++) {
+                    sum += result.xpoints[v] + result.ypoints[v];
+                }
+            }
+            long time = System.nanoTime() - start;
+            if (round >= WARM_UP) matrixNanos += time;
+            matrixSum = sum;
+        }
+
+        long transformSum = 0;
+        long transformNanos = 0;
+        int[] x = new int[VERTICES];
+        int[] y = new int[VERTICES];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (Polygon polygon : polygons) {
+                transform.transform(polygon.xpoints, polygon.ypoints, polygon.npoints, x, y);
+                for (int v = 0; v < polygon.npoints; v++) {
+                    sum += x[v] + y[v];
+                }
+            }
+            long time = System.nanoTime() - start;
+            if (round >= WARM_UP) transformNanos += time;
+            transformSum = sum;
+        }
+
+        double vertices = (double) POLYGONS * VERTICES * (ROUNDS - WARM_UP);
+        System.out.printf("Matrix.multiply(Polygon): %.2f ns per vertex%n", matrixNanos / vertices);
+        System.out.printf("Transform2D.transform():  %.2f ns per vertex%n", transformNanos / vertices);
+        System.out.printf("Speedup:                  %.2fx%n", (double) matrixNanos / transformNanos);
+        System.out.println("Same coordinates: " + (matrixSum == transformSum));
+    }
+}
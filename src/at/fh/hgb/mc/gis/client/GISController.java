@@ -1,6 +1,7 @@
 package at.fh.hgb.mc.gis.client;
 
 import at.fh.hgb.mc.gis.feature.GeoObject;
+import at.fh.hgb.mc.gis.feature.Transform2D;
 import at.fh.hgb.mc.gis.server.*;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.value.ChangeListener;
@@ -233,11 +234,8 @@ public class GISController {
                     }
                     break;
                     case "LoadData": {
+                        /* Loads in the background, fits the view and repaints once the data is complete. */
                         mModel.loadData();
-                        mModel.zoomToFit();
-                        mModel.loadPOIData();
-                        mModel.repaint();
-                        mModel.updateScale();
                     }
                     break;
                     case "ZoomToFit": {
@@ -292,10 +290,6 @@ public class GISController {
                         mModel.storeScreen();
                     }
                     break;
-                    case "Sticky": {
-                        mModel.stick();
-                    }
-                    break;
                     default:
                         break;
                 } // switch id
@@ -379,13 +373,14 @@ public class GISController {
                     }
                 }
                 break;
+
+                case SERVER_MENU_CLEAR_CACHE: {
+                    mModel.clearCache();
+                }
+                break;
             }
             if (serverChanged) {
                 mModel.loadData();
-                mModel.zoomToFit();
-                mModel.loadPOIData();
-                mModel.repaint();
-                mModel.updateScale();
             }
         }
 
@@ -467,7 +462,7 @@ public class GISController {
                     mZStart = new java.awt.geom.Point2D.Double(_e.getX(), _e.getY());
                     mDStart = new java.awt.geom.Point2D.Double(_e.getX(), _e.getY());
 
-                    if(mModel.mTransformationMatrix == null) return;
+                    if(mModel.mTransformation == null) return;
                     if(_e.getClickCount() == 2){
                         if(mView.mDialogScene != null) mView.closeSelectionDialog();
                         java.util.List<GeoObject> geos = mModel.initSelection(new Point((int) _e.getX(), (int) _e.getY()));
@@ -477,10 +472,11 @@ public class GISController {
                     Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
                     if (mPoints == null) mPoints = new ArrayList<>();
 
+                    Transform2D invers = mModel.mTransformation.getInverse();
                     if (mControlKeyDown) {
-                        mPoints.add(mModel.mTransformationMatrix.invers().multiply(new Point2D.Double(_e.getX(), _e.getY())));
+                        mPoints.add(invers.transformVector(new Point2D.Double(_e.getX(), _e.getY())));
                     } else {
-                        mPoints.add(mModel.mTransformationMatrix.invers().multiply(new Point2D.Double(_e.getX(), _e.getY())));
+                        mPoints.add(invers.transformVector(new Point2D.Double(_e.getX(), _e.getY())));
                         StringBuilder b = new StringBuilder();
                         for (Point2D point : mPoints) {
                             b.append("(").append(point.getX()).append(", ").append(point.getY()).append(") \n");
@@ -11,9 +11,22 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 
 /**
  * This class provides the logic of the program and represents the Model part of the implemented MVC-pattern.
@@ -41,17 +54,46 @@ public class GISModel {
      */
     private int mHeight = 480;
     /**
-     * List containing all GeoObjects that have been created/should be drawn in the mImage.
+     * FeatureStore containing all features that have been loaded/should be drawn in the mImage.
      */
-    private List<GeoObject> mData;
+    private FeatureStore mData;
+    /**
+     * Spatial index over the bounding boxes of mData, replaced together with it.
+     */
+    private STRTree mIndex;
+    /**
+     * Renderer drawing mData into mImage.
+     */
+    private final MapRenderer mRenderer = new MapRenderer();
+    /**
+     * Index following the last feature of every layer of mData, in drawing order.
+     */
+    private List<Integer> mLayerEnds = new ArrayList<>();
+    /**
+     * Cached image of every layer of mData, composed into mImage by repaint().
+     */
+    private final List<RasterLayer> mMapLayers = new ArrayList<>();
+    /**
+     * Cached image of the points of interest, composed above the layers of mData.
+     */
+    private final RasterLayer mPOILayer = new RasterLayer(this::paintPOIs);
+    /**
+     * Numbers of features the last repaint culled, drew and treated as degenerate.
+     */
+    private final int[] mFrameCounts = new int[3];
+    /**
+     * Distance in pixels a click may be away from a line or a point to select it.
+     */
+    private static final double PICK_TOLERANCE = 5;
     /**
      * List containing all POIObjects that have been created/should be drawn in the mImage.
      */
     private List<POIObject> mPOIData;
     /**
-     * Current transformation matrix used for converting world coordinates into window coordinates for drawing on the canvas.
+     * Current transformation used for converting world coordinates into window coordinates for drawing on the canvas.
+     * It is changed in place by panning, zooming and rotating and caches its inverse.
      */
-    protected Matrix mTransformationMatrix;
+    protected Transform2D mTransformation;
     /**
      * Drawing context for the currently loaded data.
      */
@@ -69,11 +111,75 @@ public class GISModel {
      */
     protected IGISServer mServer = new OSMLinz();
     /**
-     * Bounding box used for restricting the data fetched from the PostGIS database server.
-     * Only objects contained within the bounding box will be fetched.
-     * Used together with doExtractionWithRestriction().
+     * Quadtree of the tiles loaded from mServer. Only the tiles covering the current view are loaded and merged
+     * into mData. If the extent of the server is unknown, it only consists of the tile covering everything.
+     */
+    private TileCache mTileCache = null;
+    /**
+     * Tiles covering the current view, as requested by the last load.
+     */
+    private List<Long> mVisibleTiles = new ArrayList<>();
+    /**
+     * Maximal estimated memory used by the objects of the cached tiles, in bytes.
+     */
+    private static final long TILE_CACHE_BYTES = 256L * 1024 * 1024;
+    /**
+     * Number of rows fetched per round trip when data is streamed from mServer.
+     * This is also the size of the batches that are added to mData during loading.
+     */
+    private int mFetchSize = 2000;
+    /**
+     * Minimal time in milliseconds between two repaints of partially loaded data.
+     */
+    private static final long PARTIAL_PAINT_INTERVAL = 250;
+    /**
+     * Maximal number of layers (of one or several tiles) that are loaded concurrently, each over its own connection.
+     */
+    private static final int MAX_LOADER_THREADS = 4;
+    /**
+     * Generalisation tolerance in pixels. Vertices closer to each other than this are merged by the database server.
      */
-    private Rectangle mBBox = null;
+    private static final double LOD_PIXEL_TOLERANCE = 1.0;
+    /**
+     * Flag indicating whether new tiles have been loaded since the last repaint of partially loaded data.
+     */
+    private volatile boolean mPartialDataChanged;
+    /**
+     * Executor running the loads one after another, off the thread of the user interface.
+     */
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor(_r -> {
+        Thread thread = new Thread(_r, "GISModel loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Executor running code on the thread of the user interface. All results of a load are installed
+     * and all observer notifications of a load are made through this executor. Runs the code directly by default.
+     */
+    private Executor mUiExecutor = Runnable::run;
+    /**
+     * Cancellation of the currently running load, null if no load is running.
+     */
+    private Cancellation mLoading = null;
+    /**
+     * Maximal number of objects whose attributes are kept in mAttributeCache.
+     */
+    private static final int ATTRIBUTE_CACHE_SIZE = 256;
+    /**
+     * Attributes fetched from mServer by fetchAttributes(), mapped by type and id of their object. Only accessed on
+     * the thread of the user interface. Objects the server doesn't know are kept with empty attributes, failed
+     * fetches aren't kept. The least recently used entries are removed once there are more than ATTRIBUTE_CACHE_SIZE.
+     */
+    private final Map<String, String> mAttributeCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> _eldest) {
+            return size() > ATTRIBUTE_CACHE_SIZE;
+        }
+    };
+    /**
+     * Layer of every GeoObject returned by the last initSelection(), so fetchAttributes() only queries that layer.
+     */
+    private final Map<GeoObject, String> mSelectionLayers = new IdentityHashMap<>();
 
     /**
      * This method provides a way for an observer to subscribe to this object.
@@ -104,13 +210,15 @@ public class GISModel {
 
     /**
      * Method used to draw the polygons saved in mData to the mImage.
+     * Every layer is kept as an image of its own, which is only drawn again where the view has changed
+     * (see RasterLayer), and the images of the visible layers are composed into mImage.
      */
     public void repaint() {
         if (mImage == null) {
             mImage = initCanvas();
         }
 
-        if (mTransformationMatrix == null) {
+        if (mTransformation == null) {
             zoomToFit();
         }
 
@@ -118,26 +226,109 @@ public class GISModel {
         Graphics2D g2D = (Graphics2D) mImage.getGraphics();
         g2D.clearRect(0, 0, mWidth, mHeight);
 
-        if(mData == null) return;
-        for (GeoObject geo : mData) {
-            PresentationSchema schema = mDrawingContext.getSchema(geo.getType());
-            if (schema != null) {
-                schema.paint(g2D, geo, mTransformationMatrix);
-            }
+        if(mData == null || mTransformation == null) return;
+        Arrays.fill(mFrameCounts, 0);
+        for (RasterLayer layer : mMapLayers) {
+            layer.update(mWidth, mHeight, mTransformation);
         }
-
-        if (mShowPOI) {
-            int poiWidth = 40;
-            int poiHeight = 40;
-            for (POIObject poi : mPOIData) {
-                Point tP = mTransformationMatrix.multiply(poi.mPoint);
-                mImage.getGraphics().drawImage(poi.mIcon, tP.x - poiWidth / 2, tP.y - poiHeight / 2, poiWidth, poiHeight, null);
-            }
+        mPOILayer.setVisible(mShowPOI && mPOIData != null);
+        mPOILayer.update(mWidth, mHeight, mTransformation);
+        for (RasterLayer layer : mMapLayers) {
+            layer.compose(g2D);
         }
+        mPOILayer.compose(g2D);
 
         update();
     }
 
+    /**
+     * Draws a rectangle of one layer of mData into the image of the layer. Used by the RasterLayers of mMapLayers.
+     *
+     * @param _layer  Index of the layer.
+     * @param _image  Image of the layer.
+     * @param _t      Transformation of the view.
+     * @param _region Rectangle of the image to draw.
+     */
+    private void paintLayer(int _layer, BufferedImage _image, Transform2D _t, Rectangle _region) {
+        int from = _layer == 0 ? 0 : mLayerEnds.get(_layer - 1);
+        mRenderer.render(_image, mData, mIndex, mDrawingContext, _t, from, mLayerEnds.get(_layer), _region);
+        int[] counts = mRenderer.getFrameCounts();
+        for (int i = 0; i < counts.length; i++) {
+            mFrameCounts[i] += counts[i];
+        }
+    }
+
+    /**
+     * Draws the points of interest into a rectangle of the image of mPOILayer.
+     *
+     * @param _image  Image of the layer.
+     * @param _t      Transformation of the view.
+     * @param _region Rectangle of the image to draw.
+     */
+    private void paintPOIs(BufferedImage _image, Transform2D _t, Rectangle _region) {
+        int poiWidth = 40;
+        int poiHeight = 40;
+        Graphics2D g = _image.createGraphics();
+        g.clip(_region);
+        for (POIObject poi : mPOIData) {
+            /* Rounded down instead of truncated, so a pan by whole pixels moves every icon by the pan. */
+            int x = (int) Math.floor(_t.getX(poi.mPoint.x, poi.mPoint.y));
+            int y = (int) Math.floor(_t.getY(poi.mPoint.x, poi.mPoint.y));
+            g.drawImage(poi.mIcon, x - poiWidth / 2, y - poiHeight / 2, poiWidth, poiHeight, null);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Installs newly merged data. The cached images of all layers are drawn again on the next repaint.
+     *
+     * @param _data      FeatureStore containing all layers.
+     * @param _index     Spatial index of _data.
+     * @param _layerEnds Index following the last feature of every layer of _data.
+     */
+    private void setData(FeatureStore _data, STRTree _index, List<Integer> _layerEnds) {
+        mData = _data;
+        mIndex = _index;
+        mLayerEnds = _layerEnds;
+        while (mMapLayers.size() < _layerEnds.size()) {
+            int layer = mMapLayers.size();
+            mMapLayers.add(new RasterLayer((_image, _t, _region) -> paintLayer(layer, _image, _t, _region)));
+        }
+        while (mMapLayers.size() > _layerEnds.size()) {
+            mMapLayers.remove(mMapLayers.size() - 1);
+        }
+        invalidateLayers();
+    }
+
+    /**
+     * Marks the cached images of all layers of mData as outdated.
+     */
+    private void invalidateLayers() {
+        for (RasterLayer layer : mMapLayers) {
+            layer.invalidate();
+        }
+    }
+
+    /**
+     * Marks the cached image of one layer as outdated, e.g. after its style has changed. Only this layer is
+     * drawn again on the next repaint, the others are composed from their cached images.
+     *
+     * @param _layer Index of the layer in the order of IGISServer.getLayers().
+     */
+    public void invalidateLayer(int _layer) {
+        if (_layer >= 0 && _layer < mMapLayers.size()) mMapLayers.get(_layer).invalidate();
+    }
+
+    /**
+     * Shows or hides one layer. The layers are composed from their cached images on the next repaint.
+     *
+     * @param _layer   Index of the layer in the order of IGISServer.getLayers().
+     * @param _visible True to show the layer.
+     */
+    public void setLayerVisible(int _layer, boolean _visible) {
+        if (_layer >= 0 && _layer < mMapLayers.size()) mMapLayers.get(_layer).setVisible(_visible);
+    }
+
 
     /**
      * Set method of the mWidth variable.
@@ -147,6 +338,7 @@ public class GISModel {
     public void setWidth(int _width) {
         mWidth = _width;
         mImage = null;
+        updateTiles();
     }
 
     /**
@@ -157,35 +349,110 @@ public class GISModel {
     public void setHeight(int _height) {
         mHeight = _height;
         mImage = null;
+        updateTiles();
     }
 
     /**
-     * This method loads data from the PostGIS-server with the help of the DummyGIS class and saves it to mData.
+     * This method starts loading the data of mServer in the background and returns immediately.
+     * A load that is still running is cancelled. The view is fitted to the extent of the server and the tiles
+     * covering it are loaded. While the data is loaded it is repainted from time to time, once it is complete
+     * the points of interest are loaded and the observer is updated. Afterwards every change of the view loads
+     * the tiles covering it, see updateTiles().
      *
      * @see DummyGIS
      */
     public void loadData() {
-        if (mServer.init()) {
-            mDrawingContext = mServer.getDrawingContext();
-            doStandardExtraction();
+        startLoading(true);
+    }
+
+    /**
+     * Cancels the currently running load, if there is one. Its running queries are cancelled on the database server
+     * and its results are discarded.
+     */
+    public void cancelLoading() {
+        if (mLoading != null) {
+            mLoading.cancel();
+            mLoading = null;
         }
     }
+
+    /**
+     * Set method of the mUiExecutor variable.
+     *
+     * @param _uiExecutor Executor running code on the thread of the user interface, e.g. Platform::runLater.
+     */
+    public void setUiExecutor(Executor _uiExecutor) {
+        mUiExecutor = _uiExecutor;
+    }
+
+    /**
+     * Set method of the mFetchSize variable.
+     *
+     * @param _fetchSize Number of rows fetched per round trip while streaming data from the server.
+     */
+    public void setFetchSize(int _fetchSize) {
+        mFetchSize = _fetchSize;
+    }
+
+    /**
+     * Sets the minimal size in pixels a line or an area has to cover to be drawn with its schema.
+     *
+     * @param _pixels Minimal size in pixels.
+     * @see MapRenderer#setMinFeatureSize(double)
+     */
+    public void setMinFeatureSize(double _pixels) {
+        mRenderer.setMinFeatureSize(_pixels);
+        invalidateLayers();
+    }
+
+    /**
+     * Sets whether features below the minimal size are drawn as a single pixel or skipped.
+     *
+     * @param _drawDegenerate True if they are drawn as a single pixel, false if they are skipped.
+     * @see MapRenderer#setDrawDegenerate(boolean)
+     */
+    public void setDrawDegenerate(boolean _drawDegenerate) {
+        mRenderer.setDrawDegenerate(_drawDegenerate);
+        invalidateLayers();
+    }
+
+    /**
+     * Sets the number of threads drawing the tiles of the map image.
+     *
+     * @param _threads Number of threads, 1 or less to draw the map image serially.
+     * @see MapRenderer#setParallelism(int)
+     */
+    public void setRenderThreads(int _threads) {
+        mRenderer.setParallelism(_threads);
+    }
+
+    /**
+     * Provides the numbers of features the last repaint culled, drew and treated as degenerate,
+     * summed over the layers and strips that have been drawn again.
+     *
+     * @return Array containing the culled, drawn and degenerate counts.
+     */
+    public int[] getFrameCounts() {
+        return mFrameCounts.clone();
+    }
+
     /**
      * This method loads the points of interest that should be displayed on the map.
      *
      * @see DummyGIS
      */
     public void loadPOIData() {
-        if (mTransformationMatrix == null) return;
+        if (mTransformation == null) return;
 
         mPOIData = new ArrayList<>();
-        Matrix invers = mTransformationMatrix.invers();
+        mPOILayer.invalidate();
+        Transform2D invers = mTransformation.getInverse();
 
-        Point p1 = new Point(invers.multiply(new Point(358, 281)));
-        Point p2 = new Point(invers.multiply(new Point(282, 316)));
-        Point p3 = new Point(invers.multiply(new Point(318, 332)));
-        Point p4 = new Point(invers.multiply(new Point(488, 312)));
-        Point p5 = new Point(invers.multiply(new Point(336, 252)));
+        Point p1 = invers.transform(new Point(358, 281));
+        Point p2 = invers.transform(new Point(282, 316));
+        Point p3 = invers.transform(new Point(318, 332));
+        Point p4 = invers.transform(new Point(488, 312));
+        Point p5 = invers.transform(new Point(336, 252));
         mPOIData.add(new POIObject("lebakas", p1,
                 "poi_icons/lebakas.PNG"));
         mPOIData.add(new POIObject("linzer", p2,
@@ -208,9 +475,13 @@ public class GISModel {
     public void zoomToFit() {
         if (mData == null) return;
 
-        Rectangle world = getMapBounds(mData);
+        /* The loaded tiles may only cover a part of the world. */
+        Rectangle world = mTileCache != null && mTileCache.getWorld() != null ? mTileCache.getWorld()
+                : mData.getBounds();
+        if (world == null) return;
         Rectangle window = new Rectangle(0, 0, mWidth, mHeight - 1);
-        mTransformationMatrix = Matrix.zoomToFit(world, window, true);
+        mTransformation = new Transform2D(Matrix.zoomToFit(world, window, true));
+        updateTiles();
     }
 
     /**
@@ -220,7 +491,7 @@ public class GISModel {
      * @param _factor Der Faktor um den herein- bzw. herausgezoomt wird
      */
     public void zoom(double _factor) {
-        if (mTransformationMatrix == null) return;
+        if (mTransformation == null) return;
 
         Point point = new Point(mWidth / 2, mHeight / 2);
         zoom(point, _factor);
@@ -234,13 +505,10 @@ public class GISModel {
      * @param _factor Der Faktor um den herein- bzw. herausgezoomt wird
      */
     public void zoom(Point _pt, double _factor) {
-        if (mTransformationMatrix == null) return;
+        if (mTransformation == null) return;
 
-        Matrix t1 = Matrix.translate(-_pt.x, -_pt.y);
-        Matrix s = Matrix.scale(_factor);
-        Matrix t2 = Matrix.translate(_pt.x, _pt.y);
-
-        mTransformationMatrix = t2.multiply(s.multiply(t1.multiply(mTransformationMatrix)));
+        mTransformation.scale(_factor, _pt.x, _pt.y);
+        updateTiles();
     }
 
     /**
@@ -252,11 +520,11 @@ public class GISModel {
      */
     public Rectangle getMapBounds(List<GeoObject> _poly) {
         Rectangle rectangle = null;
-        for (int i = 0; i < _poly.size(); i++) {
+        for (GeoObject geo : _poly) {
             if (rectangle == null) {
-                rectangle = _poly.get(i).getBounds();
+                rectangle = geo.getBounds();
             } else {
-                rectangle = rectangle.union(_poly.get(i).getBounds());
+                rectangle.add(geo.getBounds());
             }
         }
         return rectangle;
@@ -269,9 +537,9 @@ public class GISModel {
      * @param _delta Die Strecke, um die horizontal verschoben werden soll
      */
     public void scrollHorizontal(int _delta) {
-        if (mTransformationMatrix == null) return;
-        Matrix t = Matrix.translate(_delta, 0);
-        mTransformationMatrix = t.multiply(mTransformationMatrix);
+        if (mTransformation == null) return;
+        mTransformation.translate(_delta, 0);
+        updateTiles();
     }
 
 
@@ -282,9 +550,9 @@ public class GISModel {
      * @param _delta Die Strecke, um die vertikal verschoben werden soll
      */
     public void scrollVertical(int _delta) {
-        if (mTransformationMatrix == null) return;
-        Matrix t = Matrix.translate(0, _delta);
-        mTransformationMatrix = t.multiply(mTransformationMatrix);
+        if (mTransformation == null) return;
+        mTransformation.translate(0, _delta);
+        updateTiles();
     }
 
     /**
@@ -293,33 +561,54 @@ public class GISModel {
      * @param _alpha Degree in rad by which the objects will be rotated.
      */
     public void rotate(double _alpha) {
-        if (mTransformationMatrix == null) return;
-
-        Rectangle world = getMapBounds(new Vector<>(mData));
-        Matrix translationMatrixA = Matrix.translate(-world.getCenterX(), -world.getCenterY());
-        Matrix rotationMatrix = Matrix.rotate(_alpha);
-        Matrix translationMatrixB = Matrix.translate(world.getCenterX(), world.getCenterY());
+        if (mTransformation == null || mData == null) return;
 
-        mTransformationMatrix = mTransformationMatrix.multiply(translationMatrixB.multiply(rotationMatrix.multiply(translationMatrixA)));
+        Rectangle world = mData.getBounds();
+        if (world == null) return;
+        mTransformation.rotate(_alpha, world.getCenterX(), world.getCenterY());
+        updateTiles();
     }
 
     /**
-     * Ermittelt die Geo-Objekte, die den Punkt (in Bildschirmkoordinaten)
-     * enthalten
+     * Determines the GeoObjects hit by the given point (in window coordinates).
+     * The candidates are taken from mIndex and tested exactly: areas have to contain the point outside of
+     * their holes, lines and points have to be at most PICK_TOLERANCE pixels away from it.
+     *
+     * The layer of every GeoObject is remembered for fetchAttributes().
      *
-     * @param _pt Ein Selektionspunkt im Bildschirmkoordinatensystem
-     * @return Ein Vektor von Geo-Objekte, die den Punkt enthalten
+     * @param _pt Selection point in window coordinates.
+     * @return The GeoObjects hit, sorted by their distance to the point, the nearest one first.
      * @see java.awt.Point
      * @see GeoObject
      */
     public List<GeoObject> initSelection(Point _pt) {
-        Point point = getMapPoint(_pt);
         List<GeoObject> result = new ArrayList<>();
-        for (GeoObject geo : mData) {
-            if (geo.getBounds().contains(point)) {
-                result.add(geo);
+        mSelectionLayers.clear();
+        if (mData == null || mTransformation == null) return result;
+
+        Point point = getMapPoint(_pt);
+        double tolerance = PICK_TOLERANCE / mTransformation.getScale();
+        int margin = (int) Math.ceil(tolerance);
+        List<Integer> hits = new ArrayList<>();
+        Map<Integer, Double> distances = new HashMap<>();
+        for (int i : mIndex.query(new Rectangle(point.x - margin, point.y - margin, 2 * margin, 2 * margin))) {
+            double distance = mData.getDistance(i, point.x, point.y);
+            if (distance <= tolerance) {
+                hits.add(i);
+                distances.put(i, distance);
             }
         }
+        hits.sort(Comparator.comparingDouble(distances::get));
+        String[] layers = mServer.getLayers();
+        for (int i : hits) {
+            GeoObject obj = mData.getObject(i);
+            result.add(obj);
+            int layer = 0;
+            while (layer < mLayerEnds.size() && i >= mLayerEnds.get(layer)) {
+                layer++;
+            }
+            mSelectionLayers.put(obj, layer < layers.length ? layers[layer] : null);
+        }
         return result;
     }
 
@@ -332,11 +621,11 @@ public class GISModel {
      * @param _winBounds Der darzustellende Bereich in Bildschirm-Koordinaten
      */
     public void zoomRect(Rectangle _winBounds) {
-        if(mTransformationMatrix == null) return;
+        if(mTransformation == null) return;
 
         Rectangle window = new Rectangle(0, 0, mWidth, mHeight - 1);
-        Matrix m = Matrix.zoomToFit(_winBounds, window, false);
-        mTransformationMatrix = m.multiply(mTransformationMatrix);
+        mTransformation.preConcatenate(new Transform2D(Matrix.zoomToFit(_winBounds, window, false)));
+        updateTiles();
     }
 
     /**
@@ -348,23 +637,33 @@ public class GISModel {
      * @see java.awt.Point
      */
     public Point getMapPoint(Point _pt) {
-        return mTransformationMatrix.invers().multiply(_pt);
+        return mTransformation.getInverse().transform(_pt);
     }
 
     /**
      * Berechnet den gerade sichtbaren Massstab der Karte
      *
      * @return der Darstellungsmassstab
-     * @see Matrix
+     * @see Transform2D
      */
     protected Double calculateScale() {
-        if(mTransformationMatrix == null) return null;
+        return calculateScale(mTransformation);
+    }
+
+    /**
+     * Berechnet den Massstab, den die uebergebene Transformation darstellt
+     *
+     * @param _transform Die Transformation, darf null sein
+     * @return der Darstellungsmassstab oder null, wenn keine Transformation uebergeben wurde
+     */
+    private Double calculateScale(Transform2D _transform) {
+        if(_transform == null) return null;
         // Aspekt b) in der Maßstabsformel
         // ein künstlicher Vektor/ein Objekt; hier der Länge 1cm
         // (gilt nur für DummyGIS-Koordinaten, die in cm angegeben sind)
         Point2D.Double vector = new Point2D.Double(0, 1.0);
         // Aspekt c) in der Maßstabsformel
-        Point2D.Double vector_transformed = mTransformationMatrix.multiply(vector);
+        Point2D.Double vector_transformed = _transform.transformVector(vector);
         double lengthA = mDotPerInch;// Länge von 1cm auf dem Bildschirm (bei 72 DPI)
         double lengthB = vector.distance(0, 0);// Länge von vector
         double lengthC = vector_transformed.distance(0, 0); // Länge von vector_transformed
@@ -374,6 +673,52 @@ public class GISModel {
         return scale;
     }
 
+    /**
+     * Calculates the generalisation tolerance for the tiles of the given level.
+     *
+     * @param _cache Tile cache the tiles belong to.
+     * @param _level Level of the tiles.
+     * @return The tolerance in map units, 0 if the tiles should be loaded in full detail.
+     */
+    private double calculateTolerance(TileCache _cache, int _level) {
+        double tolerance = _cache.getResolution(_level) * LOD_PIXEL_TOLERANCE;
+        /* Coordinates are integers, so a tolerance below one unit doesn't remove anything. */
+        return tolerance < 1 ? 0 : tolerance;
+    }
+
+    /**
+     * Determines the tiles of the given cache covering the window at the scale of the given transformation matrix.
+     *
+     * @param _cache     Tile cache of the server.
+     * @param _transform Transformation of the view, may be null.
+     * @param _window    Window the data is displayed in.
+     * @return Keys of the tiles.
+     */
+    private List<Long> getVisibleTiles(TileCache _cache, Transform2D _transform, Rectangle _window) {
+        Double scale = calculateScale(_transform);
+        if (scale == null) return _cache.getTiles(null, 0);
+
+        Transform2D invers = _transform.getInverse();
+        Point p1 = invers.transform(_window.getLocation());
+        Point p2 = invers.transform(new Point(_window.x + _window.width, _window.y + _window.height));
+        Rectangle viewport = new Rectangle(p1);
+        viewport.add(p2);
+        return _cache.getTiles(viewport, _cache.getLevel(scale / mDotPerInch));
+    }
+
+    /**
+     * Loads the tiles covering the current view if they differ from the ones of the last load.
+     * Called whenever the view changes. Tiles that are cached already are merged without querying the server.
+     */
+    private void updateTiles() {
+        if (mTileCache == null || mTransformation == null) return;
+
+        List<Long> tiles = getVisibleTiles(mTileCache, mTransformation, new Rectangle(0, 0, mWidth, mHeight));
+        if (tiles.equals(mVisibleTiles)) return;
+        mVisibleTiles = tiles;
+        startLoading(false);
+    }
+
     /**
      * This method updates all observers with the new scale.
      */
@@ -397,6 +742,7 @@ public class GISModel {
 
     /**
      * Small method for toggling the points of interest on and off.
+     * The next repaint only composes the cached layers again.
      */
     public void togglePOIS() {
         mShowPOI = !mShowPOI;
@@ -416,125 +762,346 @@ public class GISModel {
     }
 
     /**
-     * This method changes the bounding box mBBox and updates the data displayed accordingly.
+     * Cancels the running load and queues a new one on the loader thread.
+     *
+     * @param _reset True to load the data of a new server and fit the view to its extent,
+     *               false to load the tiles of the current server in mVisibleTiles.
      */
-    protected void stick() {
-        if (mServer instanceof DummyGIS || mTransformationMatrix == null) return;
+    private void startLoading(boolean _reset) {
+        cancelLoading();
+        if (_reset) {
+            /* The tiles of the previous server must not be loaded from the new one. */
+            mTileCache = null;
+            mVisibleTiles = new ArrayList<>();
+            mAttributeCache.clear();
+        }
+        Cancellation cancellation = new Cancellation();
+        mLoading = cancellation;
+        IGISServer server = mServer;
+        TileCache cache = mTileCache;
+        List<Long> tiles = mVisibleTiles;
+        Rectangle window = new Rectangle(0, 0, mWidth, mHeight);
+        mLoadExecutor.execute(() -> {
+            if (_reset) {
+                reset(server, cancellation, window);
+            } else {
+                loadTiles(server, cancellation, cache, tiles, false);
+            }
+        });
+    }
+
+    /**
+     * Starts displaying the data of the given server. Runs on the loader thread.
+     * The view is fitted to the extent of the server, a new tile cache is created for it and the
+     * tiles covering the window are loaded. Servers without an extent are loaded as a whole.
+     *
+     * @param _server       Server to load from.
+     * @param _cancellation Cancellation of this load.
+     * @param _window       Window the view is fitted into.
+     */
+    private void reset(IGISServer _server, Cancellation _cancellation, Rectangle _window) {
+        if (_cancellation.isCancelled()) return;
+
+        reportProgress(_cancellation, "Connecting", -1);
+        if (!_server.init()) {
+            reportProgress(_cancellation, "Connection failed", 0);
+            runOnUi(_cancellation, () -> mLoading = null);
+            return;
+        }
+        /* Fit the estimated extent beforehand, so the tiles for this view can be determined. */
+        Rectangle extent = _server.getExtent();
+        Transform2D transform = extent == null ? null : new Transform2D(
+                Matrix.zoomToFit(extent, new Rectangle(0, 0, _window.width, _window.height - 1), true));
+        ADrawingContext context = _server.getDrawingContext();
+        _server.closeConnection();
+
+        TileCache cache = new TileCache(extent, TILE_CACHE_BYTES);
+        List<Long> tiles = getVisibleTiles(cache, transform, _window);
+        runOnUi(_cancellation, () -> {
+            mTransformation = transform;
+            mDrawingContext = context;
+            mTileCache = cache;
+            mVisibleTiles = tiles;
+            loadPOIData();
+        });
+        loadTiles(_server, _cancellation, cache, tiles, true);
+    }
 
-        if (mBBox == null) {
-            mBBox = mTransformationMatrix.invers().multiply(new Rectangle(0, 0, mWidth, mHeight));
-            if (mServer.init()) {
-                doExtractionWithRestriction();
+    /**
+     * Loads the given tiles of a server and displays them. Runs on the loader thread,
+     * the results are installed through mUiExecutor.
+     * The load is a pipeline of fetching (and decoding) the missing tiles, merging (indexing) the tiles
+     * and rendering, each stage is reported to the observer. Partially loaded data is repainted along the way,
+     * missing tiles are shown with the data of their cached ancestors. If the load is cancelled, nothing of it
+     * is displayed, but completely loaded tiles stay cached.
+     *
+     * @param _server       Server to load from.
+     * @param _cancellation Cancellation of this load.
+     * @param _cache        Tile cache of the server.
+     * @param _tiles        Keys of the tiles covering the view.
+     * @param _reset        True if the server has just been changed. If its extent is unknown,
+     *                      the view is fitted to the data afterwards.
+     */
+    private void loadTiles(IGISServer _server, Cancellation _cancellation, TileCache _cache, List<Long> _tiles,
+                           boolean _reset) {
+        if (_cancellation.isCancelled()) return;
+
+        List<Long> missing = new ArrayList<>();
+        for (long tile : _tiles) {
+            if (!_cache.contains(tile)) missing.add(tile);
+        }
+        if (!missing.isEmpty()) {
+            reportProgress(_cancellation, "Connecting", -1);
+            if (!_server.init()) {
+                reportProgress(_cancellation, "Connection failed", 0);
+                runOnUi(_cancellation, () -> mLoading = null);
+                return;
+            }
+            extractTiles(_server, _cancellation, _cache, _tiles, missing);
+            _server.closeConnection();
+        }
+        if (_cancellation.isCancelled()) return;
+        int failed = 0;
+        for (long tile : _tiles) {
+            if (!_cache.contains(tile)) failed++;
+        }
+        boolean complete = failed == 0;
+
+        reportProgress(_cancellation, "Indexing", -1);
+        List<Integer> layerEnds = new ArrayList<>();
+        FeatureStore data = _cache.merge(_tiles, layerEnds);
+        STRTree index = new STRTree(data);
+
+        reportProgress(_cancellation, "Rendering", -1);
+        runOnUi(_cancellation, () -> {
+            setData(data, index, layerEnds);
+            mLoading = null;
+            if (!complete && mVisibleTiles == _tiles) {
+                /* Failed tiles are shown with the data of their ancestors, the next view change requests them again. */
+                mVisibleTiles = new ArrayList<>();
+            }
+            if (_reset && mTransformation == null) {
+                /* The extent of the server is unknown, fit the view to the data instead. */
+                zoomToFit();
+                loadPOIData();
+            }
+            repaint();
+            updateScale();
+            if (mObserver != null) mObserver.updateProgress(data.size() + " objects", 1);
+        });
+    }
+
+    /**
+     * This method extracts the given tiles of a server into the tile cache. Runs on the loader thread.
+     * Every layer of every tile is extracted as a task of its own, at most MAX_LOADER_THREADS of them concurrently,
+     * each over its own connection. The geometries are generalised by the database server according to the
+     * level of their tile. The tile of level 0 extracts whole layers, which are read from the LayerCache
+     * of the server if it holds an up to date and detailed enough copy, and written to it otherwise.
+     * The fetch progress is reported and the partially loaded data repainted every PARTIAL_PAINT_INTERVAL
+     * milliseconds. Unless the load is cancelled, the number of objects and the time spent extracting every layer,
+     * summed over the tiles, are reported to the observer at the end.
+     * _server.init() has to be called before using this method.
+     *
+     * @param _server       Server to extract from.
+     * @param _cancellation Cancellation of the load. Tiles that are cancelled are neither completed nor cached.
+     * @param _cache        Tile cache receiving the extracted tiles.
+     * @param _visible      Keys of the tiles covering the view, they are never evicted.
+     * @param _tiles        Keys of the tiles to extract.
+     */
+    private void extractTiles(IGISServer _server, Cancellation _cancellation, TileCache _cache, List<Long> _visible,
+                              List<Long> _tiles) {
+        String[] layers = _server.getLayers();
+        LayerCache layerCache = new LayerCache(_server.getClass().getSimpleName());
+        AtomicInteger finishedTiles = new AtomicInteger();
+        AtomicIntegerArray layerObjects = new AtomicIntegerArray(layers.length);
+        AtomicLongArray layerNanos = new AtomicLongArray(layers.length);
+        mPartialDataChanged = false;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(layers.length * _tiles.size(),
+                MAX_LOADER_THREADS));
+        for (long tile : _tiles) {
+            Rectangle envelope = _cache.getBounds(tile);
+            double tolerance = calculateTolerance(_cache, TileCache.getLevel(tile));
+            List<List<FeatureStore>> layerData = new ArrayList<>();
+            for (int i = 0; i < layers.length; i++) {
+                layerData.add(new ArrayList<>());
             }
-        } else {
-            mBBox = null;
-            if (mServer.init()) {
-                doStandardExtraction();
-                repaint();
+            AtomicInteger remainingLayers = new AtomicInteger(layers.length);
+            AtomicBoolean failed = new AtomicBoolean();
+            for (int i = 0; i < layers.length; i++) {
+                int layer = i;
+                List<FeatureStore> target = layerData.get(i);
+                executor.execute(() -> {
+                    if (_cancellation.isCancelled()) return;
+                    /* Timed from the start of the task, not from its submission to the pool. */
+                    long layerStart = System.nanoTime();
+                    if (!extractLayer(_server, _cancellation, layerCache, layers[layer], envelope, tolerance,
+                            target)) {
+                        failed.set(true);
+                    }
+                    layerNanos.addAndGet(layer, System.nanoTime() - layerStart);
+                    if (_cancellation.isCancelled() || remainingLayers.decrementAndGet() > 0) return;
+
+                    /* The last layer of the tile has been extracted. An incomplete tile isn't cached,
+                       so the next updateTiles() requests it again. */
+                    if (failed.get()) return;
+                    List<FeatureStore> stores = new ArrayList<>(layerData.size());
+                    for (int l = 0; l < layerData.size(); l++) {
+                        FeatureStore store = FeatureStore.concat(layerData.get(l));
+                        stores.add(store);
+                        layerObjects.addAndGet(l, store.size());
+                    }
+                    _cache.put(tile, stores, _visible);
+                    finishedTiles.incrementAndGet();
+                    mPartialDataChanged = true;
+                });
             }
         }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(PARTIAL_PAINT_INTERVAL, TimeUnit.MILLISECONDS)) {
+                reportProgress(_cancellation, "Fetching " + finishedTiles.get() + "/" + _tiles.size() + " tiles",
+                        (double) finishedTiles.get() / _tiles.size());
+                if (mPartialDataChanged) {
+                    mPartialDataChanged = false;
+                    List<Integer> partialEnds = new ArrayList<>();
+                    FeatureStore partial = _cache.merge(_visible, partialEnds);
+                    STRTree partialIndex = new STRTree(partial);
+                    runOnUi(_cancellation, () -> {
+                        setData(partial, partialIndex, partialEnds);
+                        repaint();
+                    });
+                }
+            }
+        } catch (InterruptedException _e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        int[] objects = new int[layers.length];
+        long[] millis = new long[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            objects[i] = layerObjects.get(i);
+            millis[i] = layerNanos.get(i) / 1000000;
+        }
+        runOnUi(_cancellation, () -> {
+            if (mObserver != null) mObserver.updateLayerTimes(layers, objects, millis);
+        });
     }
 
     /**
-     * This method handles the extraction of data from the mServer.
-     * It takes the provided bounding box mBBox into account and only fetches data that is contained within this box.
-     * mServer.init() has to be called before using this method.
-     */
-    private void doExtractionWithRestriction() {
-        if (mBBox == null) return;
-
-        if (mServer instanceof Verwaltungsgrenzen3857Server || mServer instanceof Verwaltungsgrenzen4326Server) {
-            mData = mServer.extractData("SELECT * FROM bundeslaender " +
-                    "WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-        } else if (mServer instanceof DummyGIS) {
-            //mData = mServer.extractData("select * from data where type in (233, 931, 932, 933, 934, 1101)");
-            System.out.println("Cannot do sticky with DummyGIS server... Please use a different server");
-        } else if (mServer instanceof OSMHagenberg) {
-            List<GeoObject> landuse = mServer.extractData("SELECT * FROM osm_landuse WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> natural = mServer.extractData("SELECT * FROM osm_natural WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> building = mServer.extractData("SELECT * FROM osm_building WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mData = new LinkedList<>();
-            mData.addAll(natural);
-            mData.addAll(landuse);
-            mData.addAll(building);
-        } else if (mServer instanceof OSMLinz) {
-            List<GeoObject> highway = mServer.extractData("SELECT * FROM osm_highway WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> waterway = mServer.extractData("SELECT * FROM osm_waterway WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> railway = mServer.extractData("SELECT * FROM osm_railway WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> leisure = mServer.extractData("SELECT * FROM osm_leisure WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> place = mServer.extractData("SELECT * FROM osm_place WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> landuse = mServer.extractData("SELECT * FROM osm_landuse WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> natural = mServer.extractData("SELECT * FROM osm_natural WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-            mServer.init();
-            List<GeoObject> building = mServer.extractData("SELECT * FROM osm_building WHERE ST_Intersects(geom, ST_MakeEnvelope(" + mBBox.getMinX() + ", " + mBBox.getMinY() + ", " + mBBox.getMaxX() + "," + mBBox.getMaxY() + "))", false);
-
-            mData = new ArrayList<>();
-            mData.addAll(highway);
-            mData.addAll(waterway);
-            mData.addAll(railway);
-            mData.addAll(leisure);
-            mData.addAll(natural);
-            mData.addAll(landuse);
-            mData.addAll(place);
-            mData.addAll(building);
+     * Extracts one layer of a tile into the given list of batches. Runs on a loader thread of extractTiles().
+     * Whole layers (no envelope) are read from the layer cache if possible and written to it otherwise,
+     * but only if the server has delivered them completely.
+     *
+     * @param _server       Server to extract from.
+     * @param _cancellation Cancellation of the load. A cancelled layer is incomplete and not cached.
+     * @param _layerCache   Layer cache of the server.
+     * @param _layer        Name of the layer.
+     * @param _envelope     Envelope of the tile, null to extract the whole layer.
+     * @param _tolerance    Generalisation tolerance in map units.
+     * @param _target       List receiving the extracted batches.
+     * @return True if the layer is complete, false if its extraction failed or has been cancelled.
+     */
+    private boolean extractLayer(IGISServer _server, Cancellation _cancellation, LayerCache _layerCache, String _layer,
+                              Rectangle _envelope, double _tolerance, List<FeatureStore> _target) {
+        IExtractionConsumer consumer = _batch -> addPartialData(_target, _batch);
+        /* Only whole layers are cached, restricted extractions always go to the server. */
+        long version = _envelope == null ? _server.getLayerVersion(_layer) : -1;
+        if (_layerCache.read(_layer, version, _tolerance, consumer) >= 0) return true;
+
+        if (!_server.extractLayer(_layer, _envelope, _tolerance, mFetchSize, consumer, _cancellation)
+                || _cancellation.isCancelled()) {
+            return false;
         }
+        synchronized (_target) {
+            _layerCache.write(_layer, version, _tolerance, FeatureStore.concat(_target));
+        }
+        return true;
     }
 
     /**
-     * This method handles the standard extraction of data from the mServer.
-     * mServer.init() has to be called before using this method.
-     */
-    private void doStandardExtraction() {
-        if (mServer instanceof Verwaltungsgrenzen3857Server || mServer instanceof Verwaltungsgrenzen4326Server) {
-            mData = mServer.extractData("SELECT * FROM bundeslaender", false);
-        } else if (mServer instanceof DummyGIS) {
-            mData = new LinkedList<>(mServer.extractData("select * from data where type in (233, 931, 932, 933, 934, 1101)", false));
-        } else if(mServer instanceof OSMCyprus || mServer instanceof OSMFaroe || mServer instanceof OSMAzores) {
-            List<GeoObject> highway = mServer.extractData("SELECT * FROM osm_highway", true);
-            List<GeoObject> waterway = mServer.extractData("SELECT * FROM osm_waterway", true);
-            List<GeoObject> leisure = mServer.extractData("SELECT * FROM osm_leisure", true);
-            List<GeoObject> place = mServer.extractData("SELECT * FROM osm_place", true);
-            List<GeoObject> landuse = mServer.extractData("SELECT * FROM osm_landuse", true);
-            List<GeoObject> natural = mServer.extractData("SELECT * FROM osm_natural", true);
-            List<GeoObject> building = mServer.extractData("SELECT * FROM osm_building", true);
-            mServer.closeConnection();
-
-            mData = new ArrayList<>();
-            mData.addAll(highway);
-            mData.addAll(waterway);
-            mData.addAll(leisure);
-            mData.addAll(natural);
-            mData.addAll(landuse);
-            mData.addAll(place);
-            mData.addAll(building);
-        } else if(mServer instanceof OSMLinz || mServer instanceof OSMHagenberg || mServer instanceof OSMHawaii){
-            List<GeoObject> highway = mServer.extractData("SELECT * FROM osm_highway", true);
-            List<GeoObject> waterway = mServer.extractData("SELECT * FROM osm_waterway", true);
-            List<GeoObject> railway = mServer.extractData("SELECT * FROM osm_railway", true);
-            List<GeoObject> leisure = mServer.extractData("SELECT * FROM osm_leisure", true);
-            List<GeoObject> place = mServer.extractData("SELECT * FROM osm_place", true);
-            List<GeoObject> landuse = mServer.extractData("SELECT * FROM osm_landuse", true);
-            List<GeoObject> natural = mServer.extractData("SELECT * FROM osm_natural", true);
-            List<GeoObject> building = mServer.extractData("SELECT * FROM osm_building", true);
-            mServer.closeConnection();
-
-            mData = new ArrayList<>();
-            mData.addAll(highway);
-            mData.addAll(waterway);
-            mData.addAll(railway);
-            mData.addAll(leisure);
-            mData.addAll(natural);
-            mData.addAll(landuse);
-            mData.addAll(place);
-            mData.addAll(building);
+     * Runs the given code through mUiExecutor, unless the load has been cancelled by then.
+     *
+     * @param _cancellation Cancellation of the load the code belongs to.
+     * @param _code         Code to run on the thread of the user interface.
+     */
+    private void runOnUi(Cancellation _cancellation, Runnable _code) {
+        mUiExecutor.execute(() -> {
+            if (!_cancellation.isCancelled()) _code.run();
+        });
+    }
+
+    /**
+     * Reports the progress of a load to the observer through mUiExecutor.
+     *
+     * @param _cancellation Cancellation of the load, nothing is reported once it is cancelled.
+     * @param _stage        Description of the current stage of the load.
+     * @param _progress     Progress between 0 and 1, negative if it is unknown.
+     */
+    private void reportProgress(Cancellation _cancellation, String _stage, double _progress) {
+        runOnUi(_cancellation, () -> {
+            if (mObserver != null) mObserver.updateProgress(_stage, _progress);
+        });
+    }
+
+    /**
+     * Provides the attributes of the given object. The layers are extracted without attributes, so they are
+     * fetched from the layer of the object in mServer on first request and kept in a small cache. The fetch runs on
+     * the loader thread, the consumer is called through mUiExecutor. Cached attributes are provided at once.
+     *
+     * @param _obj      Object whose attributes are needed, as returned by initSelection().
+     * @param _consumer Consumer receiving the attributes, an empty string if the server doesn't know them or null
+     *                  if fetching them failed.
+     */
+    public void fetchAttributes(GeoObject _obj, Consumer<String> _consumer) {
+        if (_obj.getAttr() != null) {
+            _consumer.accept(_obj.getAttr());
+            return;
+        }
+        String key = _obj.getType() + "," + _obj.getId();
+        String cached = mAttributeCache.get(key);
+        if (cached != null) {
+            _consumer.accept(cached);
+            return;
+        }
+        IGISServer server = mServer;
+        String layer = mSelectionLayers.get(_obj);
+        mLoadExecutor.execute(() -> {
+            String attr;
+            try {
+                attr = server.extractAttributes(layer, _obj.getId(), _obj.getType());
+                if (attr == null) attr = "";
+            } catch (Exception _e) {
+                _e.printStackTrace();
+                attr = null;
+            }
+            String result = attr;
+            mUiExecutor.execute(() -> {
+                /* Failures aren't cached, so the next request tries again. */
+                if (result != null && server == mServer) mAttributeCache.put(key, result);
+                _consumer.accept(result);
+            });
+        });
+    }
+
+    /**
+     * Deletes the cached layers of mServer, so the next extraction fetches them from the server again.
+     * Files that are still mapped can't be deleted on Windows, LayerCache reports them and no longer reads them.
+     */
+    public void clearCache() {
+        new LayerCache(mServer.getClass().getSimpleName()).invalidate();
+    }
+
+    /**
+     * Adds a batch of streamed features to the batches of its layer.
+     * Called by the loader threads of extractTiles().
+     *
+     * @param _layer Batches of the layer the batch belongs to.
+     * @param _batch Features to add.
+     */
+    private void addPartialData(List<FeatureStore> _layer, FeatureStore _batch) {
+        synchronized (_layer) {
+            _layer.add(_batch);
         }
     }
 }
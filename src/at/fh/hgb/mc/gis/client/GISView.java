@@ -1,7 +1,9 @@
 package at.fh.hgb.mc.gis.client;
 
 import at.fh.hgb.mc.gis.feature.*;
+import at.fh.hgb.mc.gis.server.ConnectionPool;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.embed.swing.SwingFXUtils;
@@ -11,6 +13,7 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
@@ -82,6 +85,10 @@ public class GISView extends Application implements IDataObserver {
      * Unique id to identify and find the OSM_FAROE_ISLANDS item from the server menu.
      */
     protected static final String SERVER_MENU_OSM_FAROE_ISLANDS = "SERVER_MENU_OSM_FAROE_ISLANDS";
+    /**
+     * Unique id to identify and find the CLEAR_CACHE item from the server menu.
+     */
+    protected static final String SERVER_MENU_CLEAR_CACHE = "SERVER_MENU_CLEAR_CACHE";
     /**
      * Reference to the corresponding controller from the MVC-pattern.
      */
@@ -111,6 +118,10 @@ public class GISView extends Application implements IDataObserver {
      * Stage used for the selection dialog window.
      */
     private Stage mDialogStage;
+    /**
+     * GeoObject currently displayed in the selection dialog, null if none is displayed.
+     */
+    private GeoObject mDialogItem = null;
     /**
      * Flag indicating whether the displayed image is currently being dragged across the screen.
      */
@@ -211,8 +222,13 @@ public class GISView extends Application implements IDataObserver {
         serverMenuOSMCyprus.setId(SERVER_MENU_OSM_CYPRUS);
         serverMenuOSMCyprus.setOnAction(mController.getActionHandler());
 
+        MenuItem serverMenuClearCache = new MenuItem("Clear cache");
+        serverMenuClearCache.setId(SERVER_MENU_CLEAR_CACHE);
+        serverMenuClearCache.setOnAction(mController.getActionHandler());
+
         serverMenu.getItems().addAll(serverMenuDummyGIS, serverMenuVWTG3857, serverMenuVWTG4326, serverMenuOSMHagenberg,
-                serverMenuOSMLinz, serverMenuOSMAzores, serverMenuOSMCyprus, serverMenuOSMFaroeIslands, serverMenuOSMHawaii);
+                serverMenuOSMLinz, serverMenuOSMAzores, serverMenuOSMCyprus, serverMenuOSMFaroeIslands, serverMenuOSMHawaii,
+                new SeparatorMenuItem(), serverMenuClearCache);
 
         ToggleGroup tg = new ToggleGroup();
         serverMenuDummyGIS.setToggleGroup(tg);
@@ -279,12 +295,9 @@ public class GISView extends Application implements IDataObserver {
         Button storeButton = new Button("Store!");
         storeButton.setId("Store");
 
-        Button stickyButton = new Button("Sticky!");
-        stickyButton.setId("Sticky");
-
         //Add buttons
         gridPane.getChildren().addAll(scrollDown, scrollLeft, scrollRight, scrollUp);
-        hBox.getChildren().addAll(loadData, zoomToFit, zoomIn, zoomOut, gridPane, rotateLeft, rotateRight, poiButton, storeButton, stickyButton);
+        hBox.getChildren().addAll(loadData, zoomToFit, zoomIn, zoomOut, gridPane, rotateLeft, rotateRight, poiButton, storeButton);
 
         // Create Text field
         TextField scaleField = new TextField("1 : unknown");
@@ -292,6 +305,14 @@ public class GISView extends Application implements IDataObserver {
         scaleField.setOnKeyPressed(mController.getKeyHandler());
         hBox.getChildren().addAll(scaleField);
 
+        // Create progress display
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setId("ProgressBar");
+        Label progressLabel = new Label();
+        progressLabel.setId("ProgressLabel");
+        progressLabel.setTextFill(Color.WHITE);
+        hBox.getChildren().addAll(progressBar, progressLabel);
+
         // Add listeners
         // Add EventListener for buttons
         loadData.setOnAction(mController.getActionHandler());
@@ -306,7 +327,6 @@ public class GISView extends Application implements IDataObserver {
         rotateRight.setOnAction(mController.getActionHandler());
         poiButton.setOnAction(mController.getActionHandler());
         storeButton.setOnAction(mController.getActionHandler());
-        stickyButton.setOnAction(mController.getActionHandler());
 
         // Add ChangeHandler for resizing
         canvasPane.widthProperty().addListener(mController.getChangeHandler());
@@ -336,6 +356,16 @@ public class GISView extends Application implements IDataObserver {
         mModel = new GISModel();
         mController = new GISController(mModel, this);
         mModel.addMapObserver(this);
+        mModel.setUiExecutor(Platform::runLater);
+    }
+
+    /**
+     * Stop method for the javafx program. Cancels a running load and closes the pooled database connections.
+     */
+    @Override
+    public void stop() {
+        mModel.cancelLoading();
+        ConnectionPool.closeAll();
     }
 
 
@@ -351,6 +381,26 @@ public class GISView extends Application implements IDataObserver {
         field.setText("1 : " + _scale);
     }
 
+    @Override
+    public void updateProgress(String _stage, double _progress) {
+        ProgressBar bar = (ProgressBar) mScene.lookup("#ProgressBar");
+        bar.setProgress(_progress < 0 ? ProgressBar.INDETERMINATE_PROGRESS : _progress);
+        Label label = (Label) mScene.lookup("#ProgressLabel");
+        label.setText(_stage);
+    }
+
+    @Override
+    public void updateLayerTimes(String[] _layers, int[] _objects, long[] _millis) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < _layers.length; i++) {
+            if (i > 0) text.append('\n');
+            text.append(_layers[i]).append(": ").append(_objects[i]).append(" objects in ").append(_millis[i])
+                    .append(" ms");
+        }
+        Label label = (Label) mScene.lookup("#ProgressLabel");
+        label.setTooltip(new Tooltip(text.toString()));
+    }
+
     /**
      * Method used for painting mImage to the canvas, indicated by CANVAS_ID, in the mScene.
      */
@@ -474,7 +524,8 @@ public class GISView extends Application implements IDataObserver {
 
     /**
      * This method displays the information of a given GeoObject in the Selection Dialog window.
-     * Dialog has to be created first with createSelectionDialog().
+     * Dialog has to be created first with createSelectionDialog(). The attributes are filled in once the model
+     * has fetched them, unless another GeoObject is displayed by then.
      *
      * @param _item GeoObject to display.
      */
@@ -486,7 +537,12 @@ public class GISView extends Application implements IDataObserver {
         Text geomTypeText = (Text) mDialogScene.lookup("#geomTypeText");
         geomTypeText.setText(_item.getGeomType());
         TextArea textArea = (TextArea) mDialogScene.lookup("#textArea");
-        textArea.setText(_item.getAttr());
+        textArea.setText("Loading attributes...");
+        mDialogItem = _item;
+        mModel.fetchAttributes(_item, _attr -> {
+            if (mDialogItem != _item) return;
+            textArea.setText(_attr != null ? _attr : "The attributes couldn't be loaded.");
+        });
 
         Canvas canvas = (Canvas) mDialogScene.lookup("#canvas");
 
@@ -499,7 +555,7 @@ public class GISView extends Application implements IDataObserver {
 
         ADrawingContext context = mModel.mDrawingContext;
         PresentationSchema schema = context.getSchema(_item.getType());
-        schema.paint(g2d, _item, transformationMatrix);
+        schema.paint(g2d, _item, new Transform2D(transformationMatrix));
 
         GraphicsContext gc = canvas.getGraphicsContext2D();
         WritableImage writable = SwingFXUtils.toFXImage(image, null);
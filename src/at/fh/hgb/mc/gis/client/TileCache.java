@@ -0,0 +1,329 @@
+package at.fh.hgb.mc.gis.client;
+
+import at.fh.hgb.mc.gis.feature.*;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * This class splits the extent of a server into a quadtree of square tiles and caches the loaded tiles.
+ * Level 0 consists of a single tile covering the whole extent, every tile of level n is split into four tiles
+ * of level n + 1. A tile is identified by a key combining its level and its column and row within that level.
+ * <p>
+ * Every cached tile holds one FeatureStore per layer. The cache is bounded by the memory used by the cached
+ * stores, the least recently used tiles are evicted first.
+ * Features spanning several tiles are loaded once per tile, merge() de-duplicates them by their id.
+ */
+public class TileCache {
+    /**
+     * Key of the tile of level 0 covering the whole extent.
+     */
+    public static final long ROOT = 0;
+    /**
+     * Deepest level of the quadtree. Tiles of this level are loaded in full detail.
+     */
+    private static final int MAX_LEVEL = 20;
+    /**
+     * Maximal width of a tile on the screen, in pixels. The level is chosen so that tiles are between half
+     * and full this size, so only a few tiles cover the window.
+     */
+    private static final int TILE_PIXELS = 1024;
+
+    /**
+     * Extent covered by the tile of level 0, null if the extent of the server is unknown.
+     * In that case the cache only consists of the tile of level 0.
+     */
+    private final Rectangle mWorld;
+    /**
+     * Width and height of the tile of level 0.
+     */
+    private final double mWorldSize;
+    /**
+     * Maximal estimated memory used by all cached tiles, in bytes.
+     */
+    private final long mMaxBytes;
+    /**
+     * Cached tiles, mapped by their key, the least recently used one first.
+     */
+    private final LinkedHashMap<Long, Tile> mTiles = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Estimated memory used by all cached tiles, in bytes.
+     */
+    private long mBytes = 0;
+
+    /**
+     * Constructs a new, empty TileCache.
+     *
+     * @param _world    Extent of the server, null if it is unknown.
+     * @param _maxBytes Maximal estimated memory used by the cached tiles, in bytes.
+     */
+    public TileCache(Rectangle _world, long _maxBytes) {
+        mWorld = _world;
+        mWorldSize = _world == null ? 0 : Math.max(Math.max(_world.width, _world.height), 1);
+        mMaxBytes = _maxBytes;
+    }
+
+    /**
+     * Get method of the mWorld variable.
+     *
+     * @return The extent covered by the tile of level 0, null if it is unknown.
+     */
+    public Rectangle getWorld() {
+        return mWorld;
+    }
+
+    /**
+     * Provides the level whose tiles are displayed at most TILE_PIXELS wide at the given resolution.
+     *
+     * @param _unitsPerPixel Map units covered by one pixel of the window.
+     * @return The level, between 0 and MAX_LEVEL.
+     */
+    public int getLevel(double _unitsPerPixel) {
+        if (mWorld == null || _unitsPerPixel <= 0) return 0;
+        double tiles = mWorldSize / (_unitsPerPixel * TILE_PIXELS);
+        int level = (int) Math.ceil(Math.log(tiles) / Math.log(2));
+        return Math.max(0, Math.min(level, MAX_LEVEL));
+    }
+
+    /**
+     * Provides the map units covered by one pixel at the deepest zoom a tile of the given level is displayed at.
+     * Geometries of the level may be generalised to this resolution without visible loss.
+     *
+     * @param _level Level of the tiles.
+     * @return The resolution in map units per pixel, 0 if the tiles have to be loaded in full detail.
+     */
+    public double getResolution(int _level) {
+        if (mWorld == null || _level >= MAX_LEVEL) return 0;
+        return getTileSize(_level) / TILE_PIXELS;
+    }
+
+    /**
+     * Provides the tiles of the given level intersecting the given viewport, row by row.
+     *
+     * @param _viewport Viewport in map coordinates.
+     * @param _level    Level of the tiles.
+     * @return Keys of the tiles, empty if the viewport lies outside of the extent.
+     */
+    public List<Long> getTiles(Rectangle _viewport, int _level) {
+        List<Long> result = new ArrayList<>();
+        if (mWorld == null || _level == 0) {
+            result.add(ROOT);
+            return result;
+        }
+        double size = getTileSize(_level);
+        int last = (1 << _level) - 1;
+        int x0 = Math.max(0, (int) Math.floor((_viewport.getMinX() - mWorld.x) / size));
+        int y0 = Math.max(0, (int) Math.floor((_viewport.getMinY() - mWorld.y) / size));
+        int x1 = Math.min(last, (int) Math.floor((_viewport.getMaxX() - mWorld.x) / size));
+        int y1 = Math.min(last, (int) Math.floor((_viewport.getMaxY() - mWorld.y) / size));
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                result.add(getKey(_level, x, y));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Provides the area covered by the given tile.
+     *
+     * @param _tile Key of the tile.
+     * @return The area in map coordinates, null for the tile of level 0, which covers everything.
+     */
+    public Rectangle getBounds(long _tile) {
+        if (mWorld == null || _tile == ROOT) return null;
+        double size = getTileSize(getLevel(_tile));
+        int x0 = (int) Math.floor(mWorld.x + getColumn(_tile) * size);
+        int y0 = (int) Math.floor(mWorld.y + getRow(_tile) * size);
+        int x1 = (int) Math.ceil(mWorld.x + (getColumn(_tile) + 1) * size);
+        int y1 = (int) Math.ceil(mWorld.y + (getRow(_tile) + 1) * size);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Checks whether the given tile is cached.
+     *
+     * @param _tile Key of the tile.
+     * @return True if the tile is cached.
+     */
+    public synchronized boolean contains(long _tile) {
+        return mTiles.containsKey(_tile);
+    }
+
+    /**
+     * Adds a loaded tile to the cache. Afterwards the least recently used tiles are evicted
+     * until the cache fits into its memory bound again. The pinned tiles are never evicted.
+     *
+     * @param _tile   Key of the tile.
+     * @param _layers One FeatureStore per layer, in drawing order.
+     * @param _pinned Tiles that are currently displayed.
+     */
+    public synchronized void put(long _tile, List<FeatureStore> _layers, Collection<Long> _pinned) {
+        Tile tile = new Tile(_layers);
+        Tile old = mTiles.put(_tile, tile);
+        if (old != null) mBytes -= old.mBytes;
+        mBytes += tile.mBytes;
+
+        Iterator<Map.Entry<Long, Tile>> it = mTiles.entrySet().iterator();
+        while (mBytes > mMaxBytes && it.hasNext()) {
+            Map.Entry<Long, Tile> entry = it.next();
+            if (entry.getKey() == _tile || _pinned.contains(entry.getKey())) continue;
+            mBytes -= entry.getValue().mBytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Merges the given tiles into a single FeatureStore, layer by layer in drawing order.
+     * A feature contained in several tiles is only added once. A tile that isn't cached is replaced by
+     * its nearest cached ancestor, so areas that are still loading show the coarser data instead of nothing.
+     *
+     * @param _tiles     Keys of the tiles to merge.
+     * @param _layerEnds List receiving the index following the last feature of every layer, may be null.
+     * @return New FeatureStore containing the features of the tiles.
+     */
+    public synchronized FeatureStore merge(List<Long> _tiles, List<Integer> _layerEnds) {
+        /* Requested tiles first, so their more detailed copies win over the ones of ancestors. */
+        List<Tile> tiles = new ArrayList<>();
+        Set<Long> ancestors = new LinkedHashSet<>();
+        int layers = 0;
+        for (long key : _tiles) {
+            Tile tile = mTiles.get(key);
+            if (tile != null) {
+                tiles.add(tile);
+            } else {
+                while (key != ROOT) {
+                    key = getParent(key);
+                    if (mTiles.containsKey(key)) {
+                        ancestors.add(key);
+                        break;
+                    }
+                }
+            }
+        }
+        for (long key : ancestors) {
+            tiles.add(mTiles.get(key));
+        }
+        for (Tile tile : tiles) {
+            layers = Math.max(layers, tile.mLayers.size());
+        }
+
+        if (tiles.size() == 1) {
+            if (_layerEnds != null) {
+                int end = 0;
+                for (FeatureStore store : tiles.get(0).mLayers) {
+                    end += store.size();
+                    _layerEnds.add(end);
+                }
+            }
+            return FeatureStore.concat(tiles.get(0).mLayers);
+        }
+
+        FeatureStore.Builder result = new FeatureStore.Builder();
+        for (int layer = 0; layer < layers; layer++) {
+            Set<String> ids = new HashSet<>();
+            for (Tile tile : tiles) {
+                if (layer >= tile.mLayers.size()) continue;
+                FeatureStore store = tile.mLayers.get(layer);
+                for (int i = 0; i < store.size(); i++) {
+                    if (ids.add(store.getId(i))) {
+                        result.add(store, i);
+                    }
+                }
+            }
+            if (_layerEnds != null) _layerEnds.add(result.size());
+        }
+        return result.build();
+    }
+
+    /**
+     * Provides the level of the given tile.
+     *
+     * @param _tile Key of the tile.
+     * @return The level.
+     */
+    public static int getLevel(long _tile) {
+        return (int) (_tile >>> 48);
+    }
+
+    /**
+     * Combines level, column and row of a tile into its key.
+     *
+     * @param _level Level of the tile.
+     * @param _x     Column of the tile.
+     * @param _y     Row of the tile.
+     * @return The key.
+     */
+    private static long getKey(int _level, int _x, int _y) {
+        return (long) _level << 48 | (long) _x << 24 | _y;
+    }
+
+    /**
+     * Provides the column of the given tile.
+     *
+     * @param _tile Key of the tile.
+     * @return The column.
+     */
+    private static int getColumn(long _tile) {
+        return (int) (_tile >>> 24 & 0xFFFFFF);
+    }
+
+    /**
+     * Provides the row of the given tile.
+     *
+     * @param _tile Key of the tile.
+     * @return The row.
+     */
+    private static int getRow(long _tile) {
+        return (int) (_tile & 0xFFFFFF);
+    }
+
+    /**
+     * Provides the tile of the next lower level containing the given tile.
+     *
+     * @param _tile Key of a tile other than ROOT.
+     * @return The key of the parent tile.
+     */
+    private static long getParent(long _tile) {
+        return getKey(getLevel(_tile) - 1, getColumn(_tile) / 2, getRow(_tile) / 2);
+    }
+
+    /**
+     * Provides the width and height of the tiles of the given level.
+     *
+     * @param _level Level of the tiles.
+     * @return The size in map units.
+     */
+    private double getTileSize(int _level) {
+        return mWorldSize / (1 << _level);
+    }
+
+    /**
+     * Storage class for the layers of a cached tile and their memory usage.
+     */
+    private static class Tile {
+        /**
+         * One FeatureStore per layer, in drawing order.
+         */
+        private final List<FeatureStore> mLayers;
+        /**
+         * Estimated memory used by the features of the tile, in bytes.
+         */
+        private final long mBytes;
+
+        /**
+         * Constructs a new Tile and estimates its memory usage.
+         *
+         * @param _layers One FeatureStore per layer, in drawing order.
+         */
+        private Tile(List<FeatureStore> _layers) {
+            mLayers = _layers;
+            long bytes = 0;
+            for (FeatureStore layer : _layers) {
+                bytes += layer.getMemorySize();
+            }
+            mBytes = bytes;
+        }
+    }
+}
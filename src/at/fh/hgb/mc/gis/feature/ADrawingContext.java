@@ -1,6 +1,7 @@
 package at.fh.hgb.mc.gis.feature;
 
 import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * Abstract class providing partial implementation for a drawing context.
@@ -11,6 +12,19 @@ public abstract class ADrawingContext {
      * Hashtable storing all PresentationSchemas of this DrawingContext.
      */
     protected Hashtable<Integer, PresentationSchema> mContext = null;
+    /**
+     * Largest type that is looked up in mTable, larger and negative ones are looked up in mContext.
+     */
+    private static final int MAX_TABLE_TYPE = 65535;
+    /**
+     * PresentationSchemas of mContext indexed by their type, so looking them up while drawing neither
+     * synchronizes nor boxes the type. It is filled after initSchemata().
+     */
+    private PresentationSchema[] mTable;
+    /**
+     * Default PresentationSchema, see getDefaultSchema().
+     */
+    private PresentationSchema mDefault;
 
     /**
      * Constructs a new ADrawingContext.
@@ -18,6 +32,16 @@ public abstract class ADrawingContext {
     protected ADrawingContext() {
         mContext = new Hashtable<>();
         initSchemata();
+        int maxType = -1;
+        for (int type : mContext.keySet()) {
+            if (type <= MAX_TABLE_TYPE) maxType = Math.max(maxType, type);
+        }
+        mTable = new PresentationSchema[maxType + 1];
+        for (Map.Entry<Integer, PresentationSchema> entry : mContext.entrySet()) {
+            int type = entry.getKey();
+            if (type >= 0 && type <= MAX_TABLE_TYPE) mTable[type] = entry.getValue();
+        }
+        mDefault = mContext.get(0);
     }
 
     /**
@@ -28,9 +52,14 @@ public abstract class ADrawingContext {
      * or a default PresentationSchema if the type doesn't exist.
      */
     public PresentationSchema getSchema(int _type) {
-        PresentationSchema schema = mContext.get(_type);
+        PresentationSchema schema;
+        if (_type >= 0 && _type < mTable.length) {
+            schema = mTable[_type];
+        } else {
+            schema = _type < 0 || _type > MAX_TABLE_TYPE ? mContext.get(_type) : null;
+        }
         if (schema == null) {
-            schema = getDefaultSchema();
+            schema = mDefault;
         }
         return schema;
     }
@@ -41,7 +70,7 @@ public abstract class ADrawingContext {
      * @return Default PresentationSchema
      */
     public PresentationSchema getDefaultSchema() {
-        return mContext.get(0);
+        return mDefault;
     }
 
     /**
@@ -0,0 +1,1025 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class stores a collection of features column by column in primitive arrays instead of one GeoObject per
+ * feature. A feature consists of parts (the polygons of a multi polygon, a line or a point), a part consists of
+ * rings (the outline and the holes of a polygon, otherwise a single ring) and a ring consists of vertices.
+ * <p>
+ * The type, geometry kind, id and attributes of feature f are stored at index f of their columns.
+ * The parts of feature f are mPartOffsets[f] to mPartOffsets[f + 1] - 1, the rings of part p are
+ * mRingOffsets[p] to mRingOffsets[p + 1] - 1 and the vertices of ring r are mVertexOffsets[r] to
+ * mVertexOffsets[r + 1] - 1.
+ * <p>
+ * The coordinates are compressed ring by ring: the vertices of ring r are encoded from byte mRingBytes[r] of
+ * mCoords on as differences to the previous vertex (the first one to 0/0), x before y, each zig-zag encoded
+ * into a variable length integer of 7 bits per byte. Neighbouring vertices are close to each other, so most
+ * differences fit into one or two bytes instead of four. getRing() decodes a ring in a single pass.
+ * <p>
+ * If setOffHeap() is switched on (or the system property gis.offheap is true), the coordinate buffers of new
+ * stores are allocated outside of the Java heap with ByteBuffer.allocateDirect(), so the heap and the work of
+ * the garbage collector don't grow with the number of loaded vertices.
+ * The size of all direct buffers is limited by -XX:MaxDirectMemorySize.
+ * <p>
+ * A FeatureStore is immutable, it is created with a Builder. getObject() and asList() provide read-only
+ * GeoObject views of single features, e.g. for the selection dialog.
+ */
+public class FeatureStore {
+    /**
+     * Geometry kind of a polygon.
+     */
+    public static final byte KIND_POLYGON = 0;
+    /**
+     * Geometry kind of a multi polygon.
+     */
+    public static final byte KIND_MULTIPOLYGON = 1;
+    /**
+     * Geometry kind of a point.
+     */
+    public static final byte KIND_POINT = 2;
+    /**
+     * Geometry kind of a line.
+     */
+    public static final byte KIND_LINE = 3;
+    /**
+     * Geometry type strings of GeoObject, indexed by geometry kind.
+     */
+    private static final String[] GEOM_TYPES = {"POLYGON", "MULTIPOLYGON", "POINT", "LINE"};
+    /**
+     * Distance in map units lines and points are padded with in their bounds, as done by GeoLine and GeoPoint.
+     */
+    private static final int BOUNDS_PADDING = 10;
+    /**
+     * Flag indicating whether the coordinates of new stores are allocated outside of the Java heap.
+     */
+    private static volatile boolean sOffHeap = Boolean.getBoolean("gis.offheap");
+
+    /**
+     * Number of features.
+     */
+    private final int mFeatureCount;
+    /**
+     * Type of every feature.
+     */
+    private final int[] mTypes;
+    /**
+     * Geometry kind of every feature.
+     */
+    private final byte[] mKinds;
+    /**
+     * Id of every feature.
+     */
+    private final String[] mIds;
+    /**
+     * Attributes of every feature.
+     */
+    private final String[] mAttrs;
+    /**
+     * Index of the first part of every feature, followed by the total number of parts.
+     */
+    private final int[] mPartOffsets;
+    /**
+     * Index of the first ring of every part, followed by the total number of rings.
+     */
+    private final int[] mRingOffsets;
+    /**
+     * Index of the first vertex of every ring, followed by the total number of vertices.
+     */
+    private final int[] mVertexOffsets;
+    /**
+     * Index of the first byte of every ring in mCoords, followed by the total number of bytes.
+     */
+    private final int[] mRingBytes;
+    /**
+     * Compressed coordinates of all vertices, on the heap or off-heap.
+     */
+    private final ByteBuffer mCoords;
+    /**
+     * Bounding box of every feature as minimal x, minimal y, maximal x and maximal y.
+     * The minimum is larger than the maximum for features without vertices.
+     */
+    private final int[] mBounds;
+    /**
+     * Minimal x coordinate of all bounding boxes.
+     */
+    private final int mMinX;
+    /**
+     * Minimal y coordinate of all bounding boxes.
+     */
+    private final int mMinY;
+    /**
+     * Maximal x coordinate of all bounding boxes.
+     */
+    private final int mMaxX;
+    /**
+     * Maximal y coordinate of all bounding boxes.
+     */
+    private final int mMaxY;
+
+    /**
+     * Constructs a new FeatureStore from exactly sized columns. The arrays are used directly.
+     * The bounding boxes of the features and of the whole store are calculated once.
+     *
+     * @param _types         Type of every feature.
+     * @param _kinds         Geometry kind of every feature.
+     * @param _ids           Id of every feature.
+     * @param _attrs         Attributes of every feature.
+     * @param _partOffsets   Index of the first part of every feature, followed by the number of parts.
+     * @param _ringOffsets   Index of the first ring of every part, followed by the number of rings.
+     * @param _vertexOffsets Index of the first vertex of every ring, followed by the number of vertices.
+     * @param _ringBytes     Index of the first byte of every ring in _coords, followed by the number of bytes.
+     * @param _coords        Compressed coordinates of all vertices, see allocateCoords().
+     */
+    public FeatureStore(int[] _types, byte[] _kinds, String[] _ids, String[] _attrs, int[] _partOffsets,
+                        int[] _ringOffsets, int[] _vertexOffsets, int[] _ringBytes, ByteBuffer _coords) {
+        mFeatureCount = _types.length;
+        mTypes = _types;
+        mKinds = _kinds;
+        mIds = _ids;
+        mAttrs = _attrs;
+        mPartOffsets = _partOffsets;
+        mRingOffsets = _ringOffsets;
+        mVertexOffsets = _vertexOffsets;
+        mRingBytes = _ringBytes;
+        mCoords = _coords;
+        mBounds = new int[4 * mFeatureCount];
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int[][] scratch = {new int[64], new int[64]};
+        for (int i = 0; i < mFeatureCount; i++) {
+            scratch = calculateBounds(i, scratch[0], scratch[1]);
+            int b = 4 * i;
+            if (mBounds[b] > mBounds[b + 2]) continue;
+            minX = Math.min(minX, mBounds[b]);
+            minY = Math.min(minY, mBounds[b + 1]);
+            maxX = Math.max(maxX, mBounds[b + 2]);
+            maxY = Math.max(maxY, mBounds[b + 3]);
+        }
+        mMinX = minX;
+        mMinY = minY;
+        mMaxX = maxX;
+        mMaxY = maxY;
+    }
+
+    /**
+     * Provides the number of features.
+     *
+     * @return The number of features.
+     */
+    public int size() {
+        return mFeatureCount;
+    }
+
+    /**
+     * Provides the type of the given feature.
+     *
+     * @param _feature Index of the feature.
+     * @return The type.
+     */
+    public int getType(int _feature) {
+        return mTypes[_feature];
+    }
+
+    /**
+     * Provides the geometry kind of the given feature.
+     *
+     * @param _feature Index of the feature.
+     * @return One of the KIND constants.
+     */
+    public byte getKind(int _feature) {
+        return mKinds[_feature];
+    }
+
+    /**
+     * Provides the id of the given feature.
+     *
+     * @param _feature Index of the feature.
+     * @return The id.
+     */
+    public String getId(int _feature) {
+        return mIds[_feature];
+    }
+
+    /**
+     * Provides the attributes of the given feature.
+     *
+     * @param _feature Index of the feature.
+     * @return The attributes, may be null.
+     */
+    public String getAttr(int _feature) {
+        return mAttrs[_feature];
+    }
+
+    /**
+     * Provides the part offsets column. The parts of feature f are getPartOffsets()[f] to getPartOffsets()[f + 1] - 1.
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getPartOffsets() {
+        return mPartOffsets;
+    }
+
+    /**
+     * Provides the ring offsets column. The rings of part p are getRingOffsets()[p] to getRingOffsets()[p + 1] - 1.
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getRingOffsets() {
+        return mRingOffsets;
+    }
+
+    /**
+     * Provides the vertex offsets column.
+     * The vertices of ring r are getVertexOffsets()[r] to getVertexOffsets()[r + 1] - 1.
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getVertexOffsets() {
+        return mVertexOffsets;
+    }
+
+    /**
+     * Provides the ring byte offsets column. The compressed vertices of ring r are stored from byte
+     * getRingBytes()[r] to getRingBytes()[r + 1] - 1 of getCoords().
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getRingBytes() {
+        return mRingBytes;
+    }
+
+    /**
+     * Provides the compressed coordinates of all vertices.
+     *
+     * @return A read-only view of the coordinates.
+     */
+    public ByteBuffer getCoords() {
+        return mCoords.asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes the vertices of the given ring.
+     *
+     * @param _ring Index of the ring.
+     * @param _x    Array receiving the x coordinates, at least as long as the ring.
+     * @param _y    Array receiving the y coordinates, at least as long as the ring.
+     * @return The number of vertices of the ring.
+     */
+    public int getRing(int _ring, int[] _x, int[] _y) {
+        ByteBuffer coords = mCoords;
+        int n = mVertexOffsets[_ring + 1] - mVertexOffsets[_ring];
+        int pos = mRingBytes[_ring];
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < n; i++) {
+            int b = coords.get(pos++);
+            int zigZag = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = coords.get(pos++);
+                zigZag |= (b & 0x7F) << shift;
+            }
+            x += (zigZag >>> 1) ^ -(zigZag & 1);
+            b = coords.get(pos++);
+            zigZag = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = coords.get(pos++);
+                zigZag |= (b & 0x7F) << shift;
+            }
+            y += (zigZag >>> 1) ^ -(zigZag & 1);
+            _x[i] = x;
+            _y[i] = y;
+        }
+        return n;
+    }
+
+    /**
+     * Checks whether the coordinates of this store are held outside of the Java heap.
+     *
+     * @return True if the coordinates are held in a direct buffer.
+     */
+    public boolean isOffHeap() {
+        return mCoords.isDirect();
+    }
+
+    /**
+     * Provides the types of all features.
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getTypes() {
+        return mTypes;
+    }
+
+    /**
+     * Provides the geometry kinds of all features.
+     *
+     * @return The column, which must not be modified.
+     */
+    public byte[] getKinds() {
+        return mKinds;
+    }
+
+    /**
+     * Estimates the memory used by this store.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getMemorySize() {
+        long bytes = 4L * (mTypes.length + mPartOffsets.length + mRingOffsets.length + mVertexOffsets.length
+                + mRingBytes.length + mBounds.length) + mCoords.capacity() + mKinds.length
+                + 8L * (mIds.length + mAttrs.length);
+        for (int i = 0; i < mFeatureCount; i++) {
+            bytes += getStringSize(mIds[i]) + getStringSize(mAttrs[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * Provides the bounding box of the given feature, which has been calculated at construction.
+     *
+     * @param _feature Index of the feature.
+     * @return A new Rectangle containing the bounding box, null if the feature has no vertices.
+     */
+    public Rectangle getBounds(int _feature) {
+        int b = 4 * _feature;
+        if (mBounds[b] > mBounds[b + 2]) return null;
+        return new Rectangle(mBounds[b], mBounds[b + 1], mBounds[b + 2] - mBounds[b], mBounds[b + 3] - mBounds[b + 1]);
+    }
+
+    /**
+     * Provides the bounding boxes of all features as minX, minY, maxX and maxY per feature.
+     * The minX of a feature without vertices is larger than its maxX.
+     *
+     * @return The column, which must not be modified.
+     */
+    public int[] getBoundsColumn() {
+        return mBounds;
+    }
+
+    /**
+     * Checks whether the bounding box of the given feature contains the given point, like
+     * getBounds(_feature).contains(_x, _y) but without creating a Rectangle.
+     *
+     * @param _feature Index of the feature.
+     * @param _x       X coordinate of the point.
+     * @param _y       Y coordinate of the point.
+     * @return True if the bounding box contains the point.
+     */
+    public boolean boundsContain(int _feature, int _x, int _y) {
+        int b = 4 * _feature;
+        return _x >= mBounds[b] && _y >= mBounds[b + 1] && _x < mBounds[b + 2] && _y < mBounds[b + 3];
+    }
+
+    /**
+     * Provides the bounding box of all features, which has been calculated at construction.
+     *
+     * @return A new Rectangle containing the bounding box, null if no feature has any vertices.
+     */
+    public Rectangle getBounds() {
+        if (mMinX > mMaxX) return null;
+        return new Rectangle(mMinX, mMinY, mMaxX - mMinX, mMaxY - mMinY);
+    }
+
+    /**
+     * Draws one part of the given feature with the current stroke of _g, like the GeoObjectPart of a GeoObject
+     * would draw itself.
+     *
+     * @param _g         Graphics2D the part is drawn on.
+     * @param _feature   Index of the feature.
+     * @param _part      Index of the part, between getPartOffsets()[_feature] and getPartOffsets()[_feature + 1].
+     * @param _t         Transformation converting the coordinates into window coordinates.
+     * @param _lineColor Color used for drawing the outline.
+     * @param _fillColor Color used for filling areas and points.
+     */
+    public void drawPart(Graphics2D _g, int _feature, int _part, Transform2D _t, Color _lineColor,
+                         Color _fillColor) {
+        int firstRing = mRingOffsets[_part];
+        switch (mKinds[_feature]) {
+            case KIND_POINT: {
+                Polygon p = transform(_t, firstRing);
+                _g.setColor(_fillColor);
+                _g.fillOval(p.xpoints[0], p.ypoints[0], 5, 5);
+                _g.setColor(_lineColor);
+                _g.drawOval(p.xpoints[0], p.ypoints[0], 5, 5);
+            }
+            break;
+            case KIND_LINE: {
+                Polygon p = transform(_t, firstRing);
+                _g.setColor(_lineColor);
+                _g.drawPolyline(p.xpoints, p.ypoints, p.npoints);
+            }
+            break;
+            default: {
+                Path2D.Double area = getPath(_part);
+                area.transform(_t.getAffineTransform());
+                _g.setColor(_fillColor);
+                _g.fill(area);
+                _g.setColor(_lineColor);
+                _g.draw(area);
+            }
+        }
+    }
+
+    /**
+     * Calculates the distance between the given point and the geometry of the given feature.
+     * Areas are tested with the even-odd rule over the outline and the holes of every part, so a point inside
+     * a hole doesn't hit its area.
+     *
+     * @param _feature Index of the feature.
+     * @param _x       X coordinate of the point in map coordinates.
+     * @param _y       Y coordinate of the point in map coordinates.
+     * @return The distance to the nearest vertex of a point feature or to the nearest segment of a line feature.
+     * For an area 0 if it contains the point, Double.POSITIVE_INFINITY otherwise.
+     */
+    public double getDistance(int _feature, double _x, double _y) {
+        int firstRing = mRingOffsets[mPartOffsets[_feature]];
+        int lastRing = mRingOffsets[mPartOffsets[_feature + 1]];
+        int size = 0;
+        for (int r = firstRing; r < lastRing; r++) {
+            size = Math.max(size, mVertexOffsets[r + 1] - mVertexOffsets[r]);
+        }
+        int[] x = new int[size];
+        int[] y = new int[size];
+        double distance = Double.POSITIVE_INFINITY;
+        byte kind = mKinds[_feature];
+        for (int p = mPartOffsets[_feature]; p < mPartOffsets[_feature + 1]; p++) {
+            if (kind == KIND_POINT || kind == KIND_LINE) {
+                int n = getRing(mRingOffsets[p], x, y);
+                for (int i = 0; i < n; i++) {
+                    double d = i == 0 ? Math.hypot(_x - x[0], _y - y[0])
+                            : getSegmentDistance(_x, _y, x[i - 1], y[i - 1], x[i], y[i]);
+                    distance = Math.min(distance, d);
+                }
+            } else {
+                boolean inside = false;
+                for (int r = mRingOffsets[p]; r < mRingOffsets[p + 1]; r++) {
+                    int n = getRing(r, x, y);
+                    for (int i = 0, j = n - 1; i < n; j = i++) {
+                        if ((y[i] > _y) != (y[j] > _y)
+                                && _x < (double) (x[j] - x[i]) * (_y - y[i]) / (y[j] - y[i]) + x[i]) {
+                            inside = !inside;
+                        }
+                    }
+                }
+                if (inside) return 0;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Creates the even-odd path of the given area part, its outline and all holes, exactly like
+     * GeoArea.getPath() does for the GeoObject view.
+     *
+     * @param _part Index of a part of a polygon or multipolygon feature.
+     * @return A new path in map coordinates.
+     */
+    public Path2D.Double getPath(int _part) {
+        int from = mRingOffsets[_part];
+        int to = mRingOffsets[_part + 1];
+        int[] x = new int[mVertexOffsets[to] - mVertexOffsets[from]];
+        int[] y = new int[x.length];
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD, x.length);
+        for (int r = from; r < to; r++) {
+            int n = getRing(r, x, y);
+            if (n == 0) continue;
+            path.moveTo(x[0], y[0]);
+            for (int i = 1; i < n; i++) {
+                path.lineTo(x[i], y[i]);
+            }
+            path.closePath();
+        }
+        return path;
+    }
+
+    /**
+     * Creates a GeoObject view of the given feature.
+     * The view is a copy, changing it doesn't change the store.
+     *
+     * @param _feature Index of the feature.
+     * @return The new GeoObject.
+     */
+    public GeoObject getObject(int _feature) {
+        List<GeoObjectPart> parts = new ArrayList<>(mPartOffsets[_feature + 1] - mPartOffsets[_feature]);
+        for (int p = mPartOffsets[_feature]; p < mPartOffsets[_feature + 1]; p++) {
+            int firstRing = mRingOffsets[p];
+            switch (mKinds[_feature]) {
+                case KIND_POINT: {
+                    Polygon ring = getRing(firstRing);
+                    parts.add(new GeoPoint(new Point(ring.xpoints[0], ring.ypoints[0])));
+                }
+                break;
+                case KIND_LINE: {
+                    Polygon ring = getRing(firstRing);
+                    List<Point> points = new ArrayList<>(ring.npoints);
+                    for (int i = 0; i < ring.npoints; i++) {
+                        points.add(new Point(ring.xpoints[i], ring.ypoints[i]));
+                    }
+                    parts.add(new GeoLine(points));
+                }
+                break;
+                default: {
+                    GeoArea area = new GeoArea(getRing(firstRing));
+                    for (int r = firstRing + 1; r < mRingOffsets[p + 1]; r++) {
+                        area.addHole(new GeoArea(getRing(r)));
+                    }
+                    parts.add(area);
+                }
+            }
+        }
+        return new GeoObject(mIds[_feature], mTypes[_feature], GEOM_TYPES[mKinds[_feature]], mAttrs[_feature], parts);
+    }
+
+    /**
+     * Provides a read-only list view of this store. Its GeoObjects are created by getObject() on every access.
+     *
+     * @return The list view.
+     */
+    public List<GeoObject> asList() {
+        return new AbstractList<GeoObject>() {
+            @Override
+            public GeoObject get(int _index) {
+                return getObject(_index);
+            }
+
+            @Override
+            public int size() {
+                return mFeatureCount;
+            }
+        };
+    }
+
+    /**
+     * Concatenates the given stores in the given order.
+     *
+     * @param _stores Stores to concatenate.
+     * @return A new store containing all features of the given stores.
+     */
+    public static FeatureStore concat(List<FeatureStore> _stores) {
+        if (_stores.size() == 1) return _stores.get(0);
+        Builder builder = new Builder();
+        for (FeatureStore store : _stores) {
+            builder.addAll(store);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Switches where the coordinates of new stores are allocated. Existing stores are not changed.
+     *
+     * @param _offHeap True to allocate the coordinates outside of the Java heap, false to use int arrays.
+     */
+    public static void setOffHeap(boolean _offHeap) {
+        sOffHeap = _offHeap;
+    }
+
+    /**
+     * Allocates a buffer for the compressed coordinates of a new store, off-heap if setOffHeap() is switched on.
+     * Only absolute get methods are used on it, so its position doesn't matter.
+     *
+     * @param _size Size in bytes.
+     * @return The new buffer.
+     */
+    public static ByteBuffer allocateCoords(int _size) {
+        return sOffHeap ? ByteBuffer.allocateDirect(_size) : ByteBuffer.allocate(_size);
+    }
+
+    /**
+     * Maps a geometry type string of GeoObject to its geometry kind.
+     *
+     * @param _geomType Geometry type as returned by GeoObject.getGeomType().
+     * @return The geometry kind.
+     */
+    public static byte getKind(String _geomType) {
+        switch (_geomType) {
+            case "MULTIPOLYGON":
+                return KIND_MULTIPOLYGON;
+            case "POINT":
+                return KIND_POINT;
+            case "LINE":
+                return KIND_LINE;
+            default:
+                return KIND_POLYGON;
+        }
+    }
+
+    /**
+     * Calculates the bounding box of the given feature into mBounds. Like GeoArea, only the outline of a polygon
+     * counts, its holes are ignored. Lines and points are padded like the bounds of GeoLine and GeoPoint,
+     * so they can be hit with the mouse.
+     *
+     * @param _feature Index of the feature.
+     * @param _x        Scratch array for the x coordinates of the decoded rings.
+     * @param _y        Scratch array for the y coordinates of the decoded rings.
+     * @return The scratch arrays, replaced by larger ones if a ring didn't fit.
+     */
+    private int[][] calculateBounds(int _feature, int[] _x, int[] _y) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int p = mPartOffsets[_feature]; p < mPartOffsets[_feature + 1]; p++) {
+            int outline = mRingOffsets[p];
+            int size = mVertexOffsets[outline + 1] - mVertexOffsets[outline];
+            if (size > _x.length) {
+                _x = new int[size];
+                _y = new int[size];
+            }
+            int n = getRing(outline, _x, _y);
+            for (int i = 0; i < n; i++) {
+                int x = _x[i];
+                int y = _y[i];
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+            }
+        }
+        if (minX <= maxX && (mKinds[_feature] == KIND_LINE || mKinds[_feature] == KIND_POINT)) {
+            minX -= BOUNDS_PADDING;
+            minY -= BOUNDS_PADDING;
+            maxX += BOUNDS_PADDING;
+            maxY += BOUNDS_PADDING;
+        }
+        int b = 4 * _feature;
+        mBounds[b] = minX;
+        mBounds[b + 1] = minY;
+        mBounds[b + 2] = maxX;
+        mBounds[b + 3] = maxY;
+        return new int[][]{_x, _y};
+    }
+
+    /**
+     * Decodes the given ring into a Polygon with exactly sized coordinate arrays.
+     *
+     * @param _ring Index of the ring.
+     * @return The new Polygon.
+     */
+    private Polygon getRing(int _ring) {
+        int n = mVertexOffsets[_ring + 1] - mVertexOffsets[_ring];
+        int[] x = new int[n];
+        int[] y = new int[n];
+        getRing(_ring, x, y);
+        return new Polygon(x, y, n);
+    }
+
+    /**
+     * Decodes the given ring and converts it into window coordinates.
+     *
+     * @param _t    Transformation converting the coordinates.
+     * @param _ring Index of the ring.
+     * @return A new Polygon containing the converted vertices.
+     */
+    private Polygon transform(Transform2D _t, int _ring) {
+        int n = mVertexOffsets[_ring + 1] - mVertexOffsets[_ring];
+        int[] x = new int[n];
+        int[] y = new int[n];
+        getRing(_ring, x, y);
+        _t.transform(x, y, n, x, y);
+        return new Polygon(x, y, n);
+    }
+
+    /**
+     * Estimates the memory used by the given string.
+     *
+     * @param _s String, may be null.
+     * @return The estimated size in bytes.
+     */
+    private static long getStringSize(String _s) {
+        return _s == null ? 0 : 40 + _s.length();
+    }
+
+    /**
+     * Calculates the distance between a point and a line segment.
+     *
+     * @param _x  X coordinate of the point.
+     * @param _y  Y coordinate of the point.
+     * @param _x1 X coordinate of the start of the segment.
+     * @param _y1 Y coordinate of the start of the segment.
+     * @param _x2 X coordinate of the end of the segment.
+     * @param _y2 Y coordinate of the end of the segment.
+     * @return The distance to the nearest point of the segment.
+     */
+    private static double getSegmentDistance(double _x, double _y, int _x1, int _y1, int _x2, int _y2) {
+        double dx = _x2 - _x1;
+        double dy = _y2 - _y1;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((_x - _x1) * dx + (_y - _y1) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(_x - (_x1 + t * dx), _y - (_y1 + t * dy));
+    }
+
+    /**
+     * This class builds a FeatureStore feature by feature. Its columns grow as needed and are trimmed by build().
+     * A feature is started with beginFeature(), followed by beginPart(), beginRing() and addVertex() calls.
+     */
+    public static class Builder {
+        /**
+         * Number of features added so far.
+         */
+        private int mFeatureCount = 0;
+        /**
+         * Number of parts added so far.
+         */
+        private int mPartCount = 0;
+        /**
+         * Number of rings added so far.
+         */
+        private int mRingCount = 0;
+        /**
+         * Number of vertices added so far.
+         */
+        private int mVertexCount = 0;
+        /**
+         * Number of rings before the current feature.
+         */
+        private int mFeatureRingStart = 0;
+        /**
+         * Number of vertices before the current feature.
+         */
+        private int mFeatureVertexStart = 0;
+        /**
+         * Number of coordinate bytes written so far.
+         */
+        private int mByteCount = 0;
+        /**
+         * Number of coordinate bytes before the current feature.
+         */
+        private int mFeatureByteStart = 0;
+        /**
+         * X coordinate of the previous vertex of the current ring, the differences are encoded relative to it.
+         */
+        private int mLastX = 0;
+        /**
+         * Y coordinate of the previous vertex of the current ring.
+         */
+        private int mLastY = 0;
+        /**
+         * Type column.
+         */
+        private int[] mTypes = new int[64];
+        /**
+         * Geometry kind column.
+         */
+        private byte[] mKinds = new byte[64];
+        /**
+         * Id column.
+         */
+        private String[] mIds = new String[64];
+        /**
+         * Attribute column.
+         */
+        private String[] mAttrs = new String[64];
+        /**
+         * Part offsets column.
+         */
+        private int[] mPartOffsets = new int[65];
+        /**
+         * Ring offsets column.
+         */
+        private int[] mRingOffsets = new int[129];
+        /**
+         * Vertex offsets column.
+         */
+        private int[] mVertexOffsets = new int[129];
+        /**
+         * Ring byte offsets column.
+         */
+        private int[] mRingBytes = new int[129];
+        /**
+         * Compressed coordinates of the vertices.
+         */
+        private byte[] mCoords = new byte[1024];
+
+        /**
+         * Provides the number of features added so far.
+         *
+         * @return The number of features.
+         */
+        public int size() {
+            return mFeatureCount;
+        }
+
+        /**
+         * Starts a new feature. Its parts have to be added afterwards.
+         *
+         * @param _id   Id of the feature.
+         * @param _type Type of the feature.
+         * @param _kind Geometry kind of the feature, one of the KIND constants.
+         * @param _attr Attributes of the feature, may be null.
+         */
+        public void beginFeature(String _id, int _type, byte _kind, String _attr) {
+            if (mFeatureCount == mTypes.length) {
+                int capacity = mTypes.length * 2;
+                mTypes = Arrays.copyOf(mTypes, capacity);
+                mKinds = Arrays.copyOf(mKinds, capacity);
+                mIds = Arrays.copyOf(mIds, capacity);
+                mAttrs = Arrays.copyOf(mAttrs, capacity);
+                mPartOffsets = Arrays.copyOf(mPartOffsets, capacity + 1);
+            }
+            mTypes[mFeatureCount] = _type;
+            mKinds[mFeatureCount] = _kind;
+            mIds[mFeatureCount] = _id;
+            mAttrs[mFeatureCount] = _attr;
+            mPartOffsets[mFeatureCount] = mPartCount;
+            mFeatureRingStart = mRingCount;
+            mFeatureVertexStart = mVertexCount;
+            mFeatureByteStart = mByteCount;
+            mFeatureCount++;
+        }
+
+        /**
+         * Starts a new part of the current feature. Its rings have to be added afterwards.
+         */
+        public void beginPart() {
+            if (mPartCount + 1 >= mRingOffsets.length) {
+                mRingOffsets = Arrays.copyOf(mRingOffsets, mRingOffsets.length * 2);
+            }
+            mRingOffsets[mPartCount++] = mRingCount;
+        }
+
+        /**
+         * Starts a new ring of the current part. Its vertices have to be added afterwards.
+         */
+        public void beginRing() {
+            if (mRingCount + 1 >= mVertexOffsets.length) {
+                mVertexOffsets = Arrays.copyOf(mVertexOffsets, mVertexOffsets.length * 2);
+                mRingBytes = Arrays.copyOf(mRingBytes, mVertexOffsets.length);
+            }
+            mVertexOffsets[mRingCount] = mVertexCount;
+            mRingBytes[mRingCount++] = mByteCount;
+            mLastX = 0;
+            mLastY = 0;
+        }
+
+        /**
+         * Adds a vertex to the current ring.
+         *
+         * @param _x X coordinate of the vertex.
+         * @param _y Y coordinate of the vertex.
+         */
+        public void addVertex(int _x, int _y) {
+            /* At most five bytes per coordinate. */
+            if (mByteCount + 10 > mCoords.length) {
+                mCoords = Arrays.copyOf(mCoords, mCoords.length * 2);
+            }
+            writeVarInt(_x - mLastX);
+            writeVarInt(_y - mLastY);
+            mLastX = _x;
+            mLastY = _y;
+            mVertexCount++;
+        }
+
+        /**
+         * Removes the current feature again, e.g. because its geometry turned out to be empty.
+         */
+        public void discardFeature() {
+            if (mFeatureCount == 0) return;
+            mFeatureCount--;
+            mPartCount = mPartOffsets[mFeatureCount];
+            mRingCount = mFeatureRingStart;
+            mVertexCount = mFeatureVertexStart;
+            mByteCount = mFeatureByteStart;
+            mIds[mFeatureCount] = null;
+            mAttrs[mFeatureCount] = null;
+        }
+
+        /**
+         * Checks whether the current feature has any parts.
+         *
+         * @return True if the current feature has at least one part.
+         */
+        public boolean hasParts() {
+            return mFeatureCount > 0 && mPartOffsets[mFeatureCount - 1] < mPartCount;
+        }
+
+        /**
+         * Adds the given GeoObject as new feature.
+         *
+         * @param _obj GeoObject to add.
+         */
+        public void add(GeoObject _obj) {
+            beginFeature(_obj.getId(), _obj.getType(), FeatureStore.getKind(_obj.getGeomType()), _obj.getAttr());
+            for (GeoObjectPart part : _obj.getPart()) {
+                beginPart();
+                if (part instanceof GeoArea) {
+                    GeoArea area = (GeoArea) part;
+                    addRing(area.getGeometry());
+                    if (area.mHoles != null) {
+                        for (GeoArea hole : area.mHoles) {
+                            addRing(hole.getGeometry());
+                        }
+                    }
+                } else if (part instanceof GeoLine) {
+                    beginRing();
+                    for (Point p : ((GeoLine) part).getGeometry()) {
+                        addVertex(p.x, p.y);
+                    }
+                } else {
+                    Point p = ((GeoPoint) part).mGeometry;
+                    beginRing();
+                    addVertex(p.x, p.y);
+                }
+            }
+        }
+
+        /**
+         * Copies the given feature of another store as new feature.
+         *
+         * @param _store   Store containing the feature.
+         * @param _feature Index of the feature.
+         */
+        public void add(FeatureStore _store, int _feature) {
+            beginFeature(_store.mIds[_feature], _store.mTypes[_feature], _store.mKinds[_feature],
+                    _store.mAttrs[_feature]);
+            for (int p = _store.mPartOffsets[_feature]; p < _store.mPartOffsets[_feature + 1]; p++) {
+                beginPart();
+                for (int r = _store.mRingOffsets[p]; r < _store.mRingOffsets[p + 1]; r++) {
+                    beginRing();
+                    mVertexCount += _store.mVertexOffsets[r + 1] - _store.mVertexOffsets[r];
+                    mByteCount += _store.mRingBytes[r + 1] - _store.mRingBytes[r];
+                }
+            }
+            /* Every ring is encoded independently of its position, so the bytes of a feature are copied at once. */
+            int from = _store.mRingBytes[_store.mRingOffsets[_store.mPartOffsets[_feature]]];
+            int to = _store.mRingBytes[_store.mRingOffsets[_store.mPartOffsets[_feature + 1]]];
+            int n = to - from;
+            if (mByteCount > mCoords.length) {
+                mCoords = Arrays.copyOf(mCoords, Math.max(mCoords.length * 2, mByteCount));
+            }
+            ByteBuffer source = _store.mCoords.duplicate();
+            source.position(from);
+            source.get(mCoords, mByteCount - n, n);
+        }
+
+        /**
+         * Copies all features of another store.
+         *
+         * @param _store Store to copy.
+         */
+        public void addAll(FeatureStore _store) {
+            for (int i = 0; i < _store.mFeatureCount; i++) {
+                add(_store, i);
+            }
+        }
+
+        /**
+         * Creates a FeatureStore with exactly sized columns out of the added features.
+         * The builder can be used further afterwards.
+         *
+         * @return The new FeatureStore.
+         */
+        public FeatureStore build() {
+            int[] partOffsets = Arrays.copyOf(mPartOffsets, mFeatureCount + 1);
+            partOffsets[mFeatureCount] = mPartCount;
+            int[] ringOffsets = Arrays.copyOf(mRingOffsets, mPartCount + 1);
+            ringOffsets[mPartCount] = mRingCount;
+            int[] vertexOffsets = Arrays.copyOf(mVertexOffsets, mRingCount + 1);
+            vertexOffsets[mRingCount] = mVertexCount;
+            int[] ringBytes = Arrays.copyOf(mRingBytes, mRingCount + 1);
+            ringBytes[mRingCount] = mByteCount;
+            ByteBuffer coords = allocateCoords(mByteCount);
+            coords.put(mCoords, 0, mByteCount).rewind();
+            return new FeatureStore(Arrays.copyOf(mTypes, mFeatureCount), Arrays.copyOf(mKinds, mFeatureCount),
+                    Arrays.copyOf(mIds, mFeatureCount), Arrays.copyOf(mAttrs, mFeatureCount), partOffsets,
+                    ringOffsets, vertexOffsets, ringBytes, coords);
+        }
+
+        /**
+         * Appends the given difference zig-zag encoded as variable length integer, 7 bits per byte starting
+         * with the lowest ones. The highest bit of a byte is set if more bytes follow.
+         *
+         * @param _delta Difference to encode.
+         */
+        private void writeVarInt(int _delta) {
+            int zigZag = (_delta << 1) ^ (_delta >> 31);
+            while ((zigZag & ~0x7F) != 0) {
+                mCoords[mByteCount++] = (byte) (zigZag & 0x7F | 0x80);
+                zigZag >>>= 7;
+            }
+            mCoords[mByteCount++] = (byte) zigZag;
+        }
+
+        /**
+         * Adds the vertices of the given polygon as new ring of the current part.
+         *
+         * @param _ring Polygon to add.
+         */
+        private void addRing(Polygon _ring) {
+            beginRing();
+            for (int i = 0; i < _ring.npoints; i++) {
+                addVertex(_ring.xpoints[i], _ring.ypoints[i]);
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package at.fh.hgb.mc.gis.feature;
 
 import java.awt.*;
-import java.awt.geom.Area;
+import java.awt.geom.Path2D;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,6 +18,10 @@ public class GeoArea implements GeoObjectPart{
      * List of GeoAreas that act as a hole in the main part of the area (mGeometry).
      */
     public List<GeoArea> mHoles;
+    /**
+     * Even-odd path of mGeometry and all holes in map coordinates, created on the first draw.
+     */
+    private Path2D.Double mPath;
 
     /**
      * This method adds a new GeoArea to the list of holes in the mGeometry Polygon.
@@ -28,35 +32,76 @@ public class GeoArea implements GeoObjectPart{
             mHoles = new ArrayList<>();
         }
         mHoles.add(_hole);
+        mPath = null;
     }
 
     /**
-     * This method combines the main polygon (mGeometry) and the list of holes to create an Area object.
-     * This Area object is then drawn.
+     * This method draws the even-odd path of the main polygon (mGeometry) and its holes, see getPath().
+     * The path is only transformed, no Area operations are done while drawing.
      * @param _g Graphics2D object the object should draw itself on.
-     * @param _m Matrix for adjusting the coordinates of the implementing class.
+     * @param _t Transformation converting the coordinates into window coordinates.
      * @param _lineColor Color used for drawing the outside line of the object.
      * @param _fillColor Color used for filling the object.
      */
     @Override
-    public void draw(Graphics2D _g, Matrix _m, Color _lineColor, Color _fillColor) {
+    public void draw(Graphics2D _g, Transform2D _t, Color _lineColor, Color _fillColor) {
 
         if(mGeometry == null) return;
 
-        Polygon transformedPoly = _m.multiply(mGeometry);
-        Area area = new Area(transformedPoly);
-        if(mHoles != null) {
-            for (GeoArea hole : mHoles) {
-                Polygon tpoly = _m.multiply(hole.mGeometry);
-                area.subtract(new Area(tpoly));
-            }
-        }
+        Shape area = getPath().createTransformedShape(_t.getAffineTransform());
         _g.setColor(_fillColor);
         _g.fill(area);
         _g.setColor(_lineColor);
         _g.draw(area);
     }
 
+    /**
+     * Provides the main polygon and all holes as one path using the even-odd winding rule,
+     * so the holes are left out when it is filled. The path is created once and reused.
+     * @return The path in map coordinates, which must not be modified.
+     */
+    public Path2D.Double getPath() {
+        if(mPath == null){
+            int size = mGeometry.npoints;
+            if(mHoles != null) {
+                for (GeoArea hole : mHoles) {
+                    size += hole.mGeometry.npoints;
+                }
+            }
+            Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD, size);
+            appendRing(path, mGeometry);
+            if(mHoles != null) {
+                for (GeoArea hole : mHoles) {
+                    appendRing(path, hole.mGeometry);
+                }
+            }
+            mPath = path;
+        }
+        return mPath;
+    }
+
+    /**
+     * Appends the given ring as closed subpath.
+     * @param _path Path to append to.
+     * @param _ring Polygon defining the ring.
+     */
+    private static void appendRing(Path2D.Double _path, Polygon _ring) {
+        if(_ring.npoints == 0) return;
+        _path.moveTo(_ring.xpoints[0], _ring.ypoints[0]);
+        for (int i = 1; i < _ring.npoints; i++) {
+            _path.lineTo(_ring.xpoints[i], _ring.ypoints[i]);
+        }
+        _path.closePath();
+    }
+
+    /**
+     * Provides the polygon defining the main part of the area.
+     * @return The polygon, which must not be modified.
+     */
+    public Polygon getGeometry() {
+        return mGeometry;
+    }
+
     @Override
     public Rectangle getBounds() {
         if(mGeometry != null){
@@ -12,18 +12,34 @@ public class GeoLine implements GeoObjectPart {
      * List of points defining a line.
      */
     List<java.awt.Point> mGeometry;
+    /**
+     * Bounding box of the points, padded by 10 in every direction. Null if there are no points.
+     */
+    private Rectangle mBounds;
 
     /**
-     * Constructs a new GeoLine.
+     * Constructs a new GeoLine and calculates its bounding box.
      * @param _points List of points defining the new line.
      */
     public GeoLine(List<Point> _points) {
         mGeometry = _points;
+        if (_points == null || _points.isEmpty()) return;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Point p : _points) {
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+        }
+        mBounds = new Rectangle(minX - 10, minY - 10, maxX - minX + 20, maxY - minY + 20);
     }
 
 
     @Override
-    public void draw(Graphics2D _g, Matrix _m, Color _lineColor, Color _fillColor) {
+    public void draw(Graphics2D _g, Transform2D _t, Color _lineColor, Color _fillColor) {
         if (mGeometry == null) return;
 
         int[] xPoints = new int[mGeometry.size()];
@@ -31,32 +47,25 @@ public class GeoLine implements GeoObjectPart {
         int nPoints = mGeometry.size();
         for (int i = 0; i < nPoints; i++) {
             Point p = mGeometry.get(i);
-            p = _m.multiply(p);
             xPoints[i] = p.x;
             yPoints[i] = p.y;
         }
-        BasicStroke stroke = (BasicStroke) _g.getStroke();
-        _g.setStroke(new BasicStroke(stroke.getLineWidth()*2));
+        _t.transform(xPoints, yPoints, nPoints, xPoints, yPoints);
         _g.setColor(_lineColor);
         _g.drawPolyline(xPoints, yPoints, nPoints);
-        _g.setStroke(stroke);
+    }
+
+    /**
+     * Provides the points defining this line.
+     * @return The points, which must not be modified.
+     */
+    public List<Point> getGeometry() {
+        return mGeometry;
     }
 
     @Override
     public Rectangle getBounds() {
-        if (mGeometry != null) {
-            if (!mGeometry.isEmpty()) {
-                Point p = mGeometry.get(0);
-                Rectangle result = new Rectangle(p.x-10, p.y-10, 20, 20).getBounds();
-                for (int i = 1; i < mGeometry.size(); i++) {
-                    p = mGeometry.get(i);
-                    Rectangle bound = new Rectangle(p.x-10, p.y-10, 20, 20).getBounds();
-                    result = result.union(bound);
-                }
-                return result;
-            }
-        }
-        return null;
+        return mBounds == null ? null : new Rectangle(mBounds);
     }
 
     @Override
@@ -33,6 +33,23 @@ public class GeoObject implements Comparable<GeoObject>, Comparator<GeoObject> {
      * Polygon containing the actual data of the object.
      */
     private List<GeoObjectPart> mParts = new LinkedList<>();
+    /**
+     * Minimal x coordinate of the bounding box, calculated at construction.
+     * Larger than mMaxX if the object has no parts.
+     */
+    private int mMinX = Integer.MAX_VALUE;
+    /**
+     * Minimal y coordinate of the bounding box, calculated at construction.
+     */
+    private int mMinY = Integer.MAX_VALUE;
+    /**
+     * Maximal x coordinate of the bounding box, calculated at construction.
+     */
+    private int mMaxX = Integer.MIN_VALUE;
+    /**
+     * Maximal y coordinate of the bounding box, calculated at construction.
+     */
+    private int mMaxY = Integer.MIN_VALUE;
 
     /**
      * Konstruktor
@@ -47,6 +64,15 @@ public class GeoObject implements Comparable<GeoObject>, Comparator<GeoObject> {
         mParts = _parts;
         mGeomType = _geomType;
         mAttr = _attr;
+        if (_parts == null) return;
+        for (GeoObjectPart part : _parts) {
+            Rectangle bounds = part.getBounds();
+            if (bounds == null) continue;
+            mMinX = Math.min(mMinX, bounds.x);
+            mMinY = Math.min(mMinY, bounds.y);
+            mMaxX = Math.max(mMaxX, bounds.x + bounds.width);
+            mMaxY = Math.max(mMaxY, bounds.y + bounds.height);
+        }
     }
 
     /**
@@ -109,14 +135,8 @@ public class GeoObject implements Comparable<GeoObject>, Comparator<GeoObject> {
      * @see java.awt.Rectangle
      */
     public Rectangle getBounds() {
-        if (!mParts.isEmpty()) {
-            Rectangle result = mParts.get(0).getBounds();
-            for (int i = 1; i < mParts.size(); i++) {
-                result = result.union(mParts.get(i).getBounds());
-            }
-            return result;
-        }
-        return null;
+        if (mMinX > mMaxX) return null;
+        return new Rectangle(mMinX, mMinY, mMaxX - mMinX, mMaxY - mMinY);
     }
 
     /**
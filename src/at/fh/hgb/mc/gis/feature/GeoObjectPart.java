@@ -8,13 +8,13 @@ import java.awt.*;
 public interface GeoObjectPart {
 
     /**
-     * This method lets the implementing class draw itself.
+     * This method lets the implementing class draw itself with the current stroke of _g.
      * @param _g Graphics2D object the object should draw itself on.
-     * @param _m Matrix for adjusting the coordinates of the object.
+     * @param _t Transformation converting the coordinates of the object into window coordinates.
      * @param _lineColor Color used for drawing the outside line of the object.
      * @param _fillColor Color used for filling the object.
      */
-    void draw(Graphics2D _g, Matrix _m, Color _lineColor, Color _fillColor);
+    void draw(Graphics2D _g, Transform2D _t, Color _lineColor, Color _fillColor);
 
     /**
      * This method provides the boundaries of this GeoObjectPart.
@@ -20,16 +20,17 @@ public class GeoPoint implements GeoObjectPart {
     }
 
     @Override
-    public void draw(Graphics2D _g, Matrix _m, Color _lineColor, Color _fillColor) {
+    public void draw(Graphics2D _g, Transform2D _t, Color _lineColor, Color _fillColor) {
 
         if (mGeometry == null) return;
 
-        Point transformedPoint = _m.multiply(mGeometry);
+        int x = (int) _t.getX(mGeometry.x, mGeometry.y);
+        int y = (int) _t.getY(mGeometry.x, mGeometry.y);
 
         _g.setColor(_fillColor);
-        _g.fillOval(transformedPoint.x, transformedPoint.y, 5, 5);
+        _g.fillOval(x, y, 5, 5);
         _g.setColor(_lineColor);
-        _g.drawOval(transformedPoint.x, transformedPoint.y, 5, 5);
+        _g.drawOval(x, y, 5, 5);
     }
 
     @Override
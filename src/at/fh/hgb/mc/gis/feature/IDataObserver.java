@@ -19,4 +19,19 @@ public interface IDataObserver {
      */
     public void updateScale(int _scale);
 
+    /**
+     * This method is called whenever a load of the observed object makes progress.
+     * @param _stage Description of the current stage of the load.
+     * @param _progress Progress between 0 and 1, negative if it is unknown.
+     */
+    public void updateProgress(String _stage, double _progress);
+
+    /**
+     * This method is called whenever a load has extracted its data, to show which layers took the longest.
+     * @param _layers Names of the layers in drawing order.
+     * @param _objects Number of objects extracted per layer.
+     * @param _millis Time in milliseconds spent extracting every layer, summed over all extracted tiles.
+     */
+    public void updateLayerTimes(String[] _layers, int[] _objects, long[] _millis);
+
 }
@@ -0,0 +1,17 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A class can implement this interface to draw the content of a RasterLayer.
+ */
+public interface ILayerPainter {
+    /**
+     * This method is called whenever a part of the layer has to be drawn again.
+     * @param _image Transparent image of the layer, the rectangle has been cleared before.
+     * @param _t Transformation converting map coordinates into image coordinates.
+     * @param _region Rectangle of the image to draw, pixels outside of it must not be changed.
+     */
+    public void paint(BufferedImage _image, Transform2D _t, Rectangle _region);
+}
@@ -0,0 +1,911 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class renders the features of a FeatureStore into an image.
+ * <p>
+ * A frame first selects the features to draw: the spatial index provides the candidates around the window,
+ * candidates whose converted bounds miss the window are culled, and lines and areas smaller than
+ * mMinFeatureSize are degenerate and drawn as a single pixel or skipped. The selected features are drawn in the
+ * batches of a RenderPlan, which is kept per store. Lines and areas are drawn with the simplified paths of a
+ * ScreenGeometry, which is kept per zoom level.
+ * <p>
+ * The selected features are either drawn on the calling thread, or the image is split into tiles of TILE_SIZE
+ * pixels that are drawn concurrently by a ForkJoinPool. Every tile draws the features touching it into the raster
+ * of its thread, which has the size of the image, and copies its pixels into the image. The tiles use the same
+ * coordinates as the serial renderer, so the tiled image is identical to the serially drawn one.
+ * <p>
+ * Java2D cuts lines and areas crossing the clip at the clip before rasterising them, which moves the pixels of
+ * long segments by one. So a tile only clips the features lying completely inside of the tile extended by
+ * TILE_GUARD pixels, which a clip doesn't change. Features crossing the border of this band are drawn without a
+ * clip like in the serial renderer, they are only cut by the border of the image as well.
+ * <p>
+ * Every tile costs the copies of its pixels and draws the features crossing several tiles once per tile, so frames
+ * selecting fewer than mMinTiledFeatures features are drawn on the calling thread.
+ * <p>
+ * The same cut happens at the border of the image, so the pixels near it differ from those of a larger image
+ * drawn with the same view. The paths are drawn in image coordinates rounded like those of ScreenGeometry, so
+ * a view panned by whole pixels gives exactly the same pixels moved by the pan, and segments near the image are
+ * split into pieces of at most PIECE_LENGTH pixels, so only pixels within BORDER_BAND pixels of the border are
+ * changed by the cut. RasterLayer relies on both when it moves its image instead of drawing it again.
+ */
+public class MapRenderer {
+    /**
+     * Margin in pixels the window is extended by when selecting features, so points and wide lines whose
+     * bounding boxes lie just outside of the window or a tile are drawn as well.
+     */
+    private static final int VIEWPORT_MARGIN = 16;
+    /**
+     * Width in pixels of the band along the border of the image whose pixels may differ from those of a larger
+     * image drawn with the same view. A segment crossing the border only changes the pixels of the piece the
+     * border cuts, which lie within PIECE_LENGTH pixels of the border, plus half of the width of its stroke.
+     * Strokes up to 2 * (BORDER_BAND - PIECE_LENGTH) pixels wide stay within the band.
+     */
+    public static final int BORDER_BAND = 16;
+    /**
+     * Maximal extent in pixels in x and y direction of the pieces segments near the image are split into.
+     */
+    private static final int PIECE_LENGTH = BORDER_BAND / 2;
+    /**
+     * Shape of a point at the origin, moved to the pixel of the point while drawing. The circle is flattened
+     * within a tenth of a pixel, so like the paths of ScreenGeometry and their strokes it only consists of
+     * straight segments.
+     */
+    private static final Path2D.Double POINT_SHAPE = createPointShape();
+    /**
+     * Width and height in pixels of the tiles drawn concurrently.
+     */
+    private static final int TILE_SIZE = 256;
+    /**
+     * Width in pixels of the band around a tile that is drawn along with it. Features lying completely inside of
+     * the tile and the band are drawn with a clip, so a wider band clips more features but draws more pixels.
+     */
+    private static final int TILE_GUARD = 32;
+    /**
+     * Maximal estimated memory in bytes used by the paths of all zoom levels kept in mGeometryLevels.
+     */
+    private static final long MAX_GEOMETRY_BYTES = 32L * 1024 * 1024;
+    /**
+     * Tolerance in pixels of the Douglas-Peucker simplification applied before drawing.
+     */
+    private static final double SCREEN_TOLERANCE = 0.5;
+    /**
+     * State of a selected feature that is drawn with its schema.
+     */
+    private static final byte DRAWN = 1;
+    /**
+     * State of a selected feature that is degenerate.
+     */
+    private static final byte DEGENERATE = 2;
+    /**
+     * Minimal size in pixels a line or an area has to cover in x or y direction to be drawn with its schema.
+     * Smaller ones are degenerate and drawn as a single pixel or skipped, see mDrawDegenerate.
+     */
+    private double mMinFeatureSize = 1;
+    /**
+     * Flag indicating whether degenerate features are drawn as a single pixel instead of being skipped.
+     */
+    private boolean mDrawDegenerate = true;
+    /**
+     * Minimal number of selected features of a frame to draw it in tiles, if a pool is set.
+     */
+    private int mMinTiledFeatures = 500;
+    /**
+     * Pool drawing the tiles of a frame, null if frames are drawn on the calling thread.
+     */
+    private ForkJoinPool mPool = null;
+    /**
+     * Number of features the last frame culled, because they lay outside of the window.
+     */
+    private int mCulledCount;
+    /**
+     * Number of features the last frame drew with their schema.
+     */
+    private int mDrawnCount;
+    /**
+     * Number of degenerate features the last frame drew as a single pixel or skipped.
+     */
+    private int mDegenerateCount;
+    /**
+     * Simplified geometry for the most recently drawn zoom levels, most recently used first.
+     */
+    private final List<ScreenGeometry> mGeometryLevels = new ArrayList<>();
+    /**
+     * Render plan of the last drawn store, null before the first frame.
+     */
+    private RenderPlan mPlan = null;
+    /**
+     * Image of every thread the tiles and regions are drawn into before they are copied into the frame.
+     */
+    private final ThreadLocal<BufferedImage> mScratch = new ThreadLocal<>();
+
+    /**
+     * Set method of the mMinFeatureSize variable.
+     *
+     * @param _pixels Minimal size in pixels a line or an area has to cover to be drawn with its schema.
+     */
+    public void setMinFeatureSize(double _pixels) {
+        mMinFeatureSize = _pixels;
+    }
+
+    /**
+     * Set method of the mDrawDegenerate variable.
+     *
+     * @param _drawDegenerate True if features below mMinFeatureSize are drawn as a single pixel, false if they
+     *                        are skipped.
+     */
+    public void setDrawDegenerate(boolean _drawDegenerate) {
+        mDrawDegenerate = _drawDegenerate;
+    }
+
+    /**
+     * Set method of the mMinTiledFeatures variable.
+     *
+     * @param _features Minimal number of selected features of a frame to draw it in tiles, 0 to always use tiles
+     *                  if there are several threads.
+     */
+    public void setMinTiledFeatures(int _features) {
+        mMinTiledFeatures = _features;
+    }
+
+    /**
+     * Sets the number of threads drawing the tiles of a frame.
+     *
+     * @param _threads Number of threads, 1 or less to draw frames serially on the calling thread.
+     */
+    public void setParallelism(int _threads) {
+        if (mPool != null) {
+            mPool.shutdown();
+        }
+        mPool = _threads > 1 ? new ForkJoinPool(_threads) : null;
+    }
+
+    /**
+     * Provides the numbers of features the last frame culled, drew and treated as degenerate.
+     *
+     * @return Array containing the culled, drawn and degenerate counts.
+     */
+    public int[] getFrameCounts() {
+        return new int[]{mCulledCount, mDrawnCount, mDegenerateCount};
+    }
+
+    /**
+     * Draws the features of the given store visible with the given transformation into the image.
+     * The image isn't cleared before.
+     *
+     * @param _image   Image to draw on.
+     * @param _store   FeatureStore containing the features.
+     * @param _index   Spatial index of _store.
+     * @param _context Drawing context providing the schemas of the features.
+     * @param _t       Transformation converting map coordinates into image coordinates.
+     */
+    public void render(BufferedImage _image, FeatureStore _store, STRTree _index, ADrawingContext _context,
+                       Transform2D _t) {
+        render(_image, _store, _index, _context, _t, 0, _store.size(),
+                new Rectangle(0, 0, _image.getWidth(), _image.getHeight()));
+    }
+
+    /**
+     * Draws the features of the given range of the store visible with the given transformation into a
+     * rectangle of the image, the pixels outside of it are left unchanged. The pixels inside of it are the same
+     * as if the whole image was drawn. The image isn't cleared before.
+     *
+     * @param _image   Image to draw on.
+     * @param _store   FeatureStore containing the features.
+     * @param _index   Spatial index of _store.
+     * @param _context Drawing context providing the schemas of the features.
+     * @param _t       Transformation converting map coordinates into image coordinates.
+     * @param _from    Index of the first feature to draw, for example the first feature of a layer.
+     * @param _to      Index following the last feature to draw.
+     * @param _region  Rectangle of the image to draw, which has to lie inside of the image.
+     */
+    public void render(BufferedImage _image, FeatureStore _store, STRTree _index, ADrawingContext _context,
+                       Transform2D _t, int _from, int _to, Rectangle _region) {
+        int width = _image.getWidth();
+        int height = _image.getHeight();
+        int minX = _region.x - VIEWPORT_MARGIN;
+        int minY = _region.y - VIEWPORT_MARGIN;
+        int maxX = _region.x + _region.width + VIEWPORT_MARGIN;
+        int maxY = _region.y + _region.height + VIEWPORT_MARGIN;
+        /* The index only knows the axis aligned viewport in map coordinates, which is too large if the view is
+           rotated, so the bounds of every candidate are converted and tested against the window once more. */
+        int[] candidates = _index.query(getViewport(_t, minX, minY, maxX, maxY));
+        RenderPlan plan = getPlan(_store, _context);
+        int[] ranks = new int[candidates.length];
+        int count = 0;
+        for (int i : candidates) {
+            if (i < _from || i >= _to) continue;
+            int rank = plan.getRank(i);
+            if (rank >= 0) ranks[count++] = rank;
+        }
+        Arrays.sort(ranks, 0, count);
+
+        Frame frame = new Frame(_store, plan, getScreenGeometry(_store, _t), _t, width, height, count);
+        int[] bounds = _store.getBoundsColumn();
+        double[] box = new double[4];
+        int culled = _to - _from - count;
+        int drawn = 0;
+        int degenerate = 0;
+        int batch = 0;
+        for (int k = 0; k < count; k++) {
+            while (ranks[k] >= plan.getBatchEnd(batch)) {
+                batch++;
+            }
+            int i = plan.getFeature(ranks[k]);
+            frame.transformBox(bounds, i, box);
+            if (box[2] < minX || box[3] < minY || box[0] > maxX || box[1] > maxY) {
+                culled++;
+                continue;
+            }
+            /* Points are drawn with a fixed size in pixels, so only lines and areas can degenerate. */
+            boolean isDegenerate = _store.getKind(i) != FeatureStore.KIND_POINT
+                    && box[2] - box[0] < mMinFeatureSize && box[3] - box[1] < mMinFeatureSize;
+            if (isDegenerate) {
+                degenerate++;
+            } else {
+                drawn++;
+            }
+            frame.add(i, batch, isDegenerate ? DEGENERATE : DRAWN, box);
+        }
+        mCulledCount = culled;
+        mDrawnCount = drawn;
+        mDegenerateCount = degenerate;
+
+        if (_region.width < width || _region.height < height) {
+            /* Only a part of the image, which is drawn like a single tile. */
+            frame.drawTile(_image, _region.x, _region.y, _region.width, _region.height);
+        } else if (mPool == null || drawn + degenerate < mMinTiledFeatures) {
+            Graphics2D g = _image.createGraphics();
+            frame.draw(g, g, null, 0, 0, width, height);
+            g.dispose();
+        } else {
+            int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+            mPool.invoke(new TileTask(frame, _image, columns, 0, columns * rows));
+        }
+    }
+
+    /**
+     * Creates POINT_SHAPE.
+     *
+     * @return A circle with a diameter of 5 pixels at the origin, flattened within a tenth of a pixel.
+     */
+    private static Path2D.Double createPointShape() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.append(new Ellipse2D.Double(0, 0, 5, 5).getPathIterator(null, 0.1), false);
+        return shape;
+    }
+
+    /**
+     * Provides the area of the map visible in the given rectangle of the image.
+     *
+     * @param _t    Transformation converting map coordinates into image coordinates.
+     * @param _minX Left border of the rectangle.
+     * @param _minY Upper border of the rectangle.
+     * @param _maxX Right border of the rectangle.
+     * @param _maxY Lower border of the rectangle.
+     * @return The bounding box of the rectangle in map coordinates, which also covers a rotated view.
+     */
+    private static Rectangle getViewport(Transform2D _t, int _minX, int _minY, int _maxX, int _maxY) {
+        int[] x = {_minX, _maxX, _maxX, _minX};
+        int[] y = {_minY, _minY, _maxY, _maxY};
+        Rectangle viewport = _t.getInverse().transform(new Polygon(x, y, 4)).getBounds();
+        /* The corners are truncated to whole map units. */
+        viewport.grow(1, 1);
+        return viewport;
+    }
+
+    /**
+     * Provides the simplified geometry of the given store for the zoom level of the given transformation.
+     * Levels are kept across pans and reused when zooming back, levels of other stores are dropped.
+     * The least recently used levels are dropped while all levels use more than MAX_GEOMETRY_BYTES.
+     *
+     * @param _store FeatureStore to draw.
+     * @param _t     Current transformation of the view.
+     * @return The ScreenGeometry of the zoom level.
+     */
+    private ScreenGeometry getScreenGeometry(FeatureStore _store, Transform2D _t) {
+        mGeometryLevels.removeIf(_level -> _level.getStore() != _store);
+        ScreenGeometry level = null;
+        for (int i = 0; i < mGeometryLevels.size() && level == null; i++) {
+            if (mGeometryLevels.get(i).matches(_store, _t)) {
+                level = mGeometryLevels.remove(i);
+            }
+        }
+        if (level == null) {
+            level = new ScreenGeometry(_store, _t, SCREEN_TOLERANCE, MAX_GEOMETRY_BYTES);
+        }
+        mGeometryLevels.add(0, level);
+        long bytes = 0;
+        for (ScreenGeometry cached : mGeometryLevels) {
+            bytes += cached.getMemorySize();
+        }
+        while (bytes > MAX_GEOMETRY_BYTES && mGeometryLevels.size() > 1) {
+            bytes -= mGeometryLevels.remove(mGeometryLevels.size() - 1).getMemorySize();
+        }
+        return level;
+    }
+
+    /**
+     * Provides the render plan of the given store and drawing context, which is only built on the first frame.
+     *
+     * @param _store   FeatureStore to draw.
+     * @param _context Drawing context providing the schemas of the features.
+     * @return The RenderPlan.
+     */
+    private RenderPlan getPlan(FeatureStore _store, ADrawingContext _context) {
+        if (mPlan == null || !mPlan.matches(_store, _context)) {
+            mPlan = new RenderPlan(_store, _context);
+        }
+        return mPlan;
+    }
+
+    /**
+     * The features selected for one frame, in the order of the render plan. It is only read while drawing,
+     * so all tiles can share it.
+     */
+    private class Frame {
+        /**
+         * FeatureStore containing the features.
+         */
+        private final FeatureStore mStore;
+        /**
+         * Render plan the features are ordered by.
+         */
+        private final RenderPlan mPlan;
+        /**
+         * Simplified geometry of mStore for the zoom level of the frame.
+         */
+        private final ScreenGeometry mGeometry;
+        /**
+         * Scale and rotation of the frame, without translation.
+         */
+        private final Transform2D mLinear;
+        /**
+         * Translation of the frame in x direction, rounded with ScreenGeometry.snap().
+         */
+        private final double mTranslateX;
+        /**
+         * Translation of the frame in y direction, rounded with ScreenGeometry.snap().
+         */
+        private final double mTranslateY;
+        /**
+         * Width of the image.
+         */
+        private final int mWidth;
+        /**
+         * Height of the image.
+         */
+        private final int mHeight;
+        /**
+         * Indices of the selected features.
+         */
+        private final int[] mFeatures;
+        /**
+         * State of every selected feature: DRAWN or DEGENERATE.
+         */
+        private final byte[] mStates;
+        /**
+         * Bounds of every selected feature in image coordinates, as minimal x, minimal y, maximal x and maximal y.
+         */
+        private final double[] mBoxes;
+        /**
+         * Number of selected features.
+         */
+        private int mSize = 0;
+        /**
+         * Batch of the render plan of every batch of the frame.
+         */
+        private final int[] mBatches;
+        /**
+         * First selected feature of every batch of the frame, followed by mSize once the frame is complete.
+         */
+        private final int[] mBatchStarts;
+        /**
+         * Number of batches of the frame.
+         */
+        private int mBatchCount = 0;
+
+        /**
+         * Constructs a new Frame without any selected features.
+         *
+         * @param _store    FeatureStore containing the features.
+         * @param _plan     Render plan the features are ordered by.
+         * @param _geometry Simplified geometry of _store for the zoom level of the frame.
+         * @param _t        Transformation of the frame.
+         * @param _width    Width of the image.
+         * @param _height   Height of the image.
+         * @param _capacity Maximal number of selected features.
+         */
+        private Frame(FeatureStore _store, RenderPlan _plan, ScreenGeometry _geometry, Transform2D _t, int _width,
+                      int _height, int _capacity) {
+            mStore = _store;
+            mPlan = _plan;
+            mGeometry = _geometry;
+            mLinear = _t.getLinearPart();
+            mTranslateX = ScreenGeometry.snap(_t.getTranslateX());
+            mTranslateY = ScreenGeometry.snap(_t.getTranslateY());
+            mWidth = _width;
+            mHeight = _height;
+            mFeatures = new int[_capacity];
+            mStates = new byte[_capacity];
+            mBoxes = new double[4 * _capacity];
+            mBatches = new int[Math.min(_capacity, _plan.getBatchCount())];
+            mBatchStarts = new int[mBatches.length + 1];
+        }
+
+        /**
+         * Converts the bounds of a feature into image coordinates, rounded like the paths, so a pan by whole
+         * pixels moves them exactly by the pan.
+         *
+         * @param _bounds  Bounding boxes of the features as returned by FeatureStore.getBoundsColumn().
+         * @param _feature Index of the feature.
+         * @param _box     Array receiving the bounds as minimal x, minimal y, maximal x and maximal y.
+         */
+        private void transformBox(int[] _bounds, int _feature, double[] _box) {
+            mLinear.transformBox(_bounds[4 * _feature], _bounds[4 * _feature + 1], _bounds[4 * _feature + 2],
+                    _bounds[4 * _feature + 3], _box);
+            _box[0] = ScreenGeometry.snap(_box[0]) + mTranslateX;
+            _box[1] = ScreenGeometry.snap(_box[1]) + mTranslateY;
+            _box[2] = ScreenGeometry.snap(_box[2]) + mTranslateX;
+            _box[3] = ScreenGeometry.snap(_box[3]) + mTranslateY;
+        }
+
+        /**
+         * Selects a feature. Features have to be added in the order of the render plan.
+         *
+         * @param _feature Index of the feature.
+         * @param _batch   Batch of the feature in the render plan.
+         * @param _state   DRAWN or DEGENERATE.
+         * @param _box     Bounds of the feature in image coordinates.
+         */
+        private void add(int _feature, int _batch, byte _state, double[] _box) {
+            if (mBatchCount == 0 || mBatches[mBatchCount - 1] != _batch) {
+                mBatches[mBatchCount] = _batch;
+                mBatchStarts[mBatchCount] = mSize;
+                mBatchCount++;
+            }
+            mFeatures[mSize] = _feature;
+            mStates[mSize] = _state;
+            System.arraycopy(_box, 0, mBoxes, 4 * mSize, 4);
+            mSize++;
+            mBatchStarts[mBatchCount] = mSize;
+        }
+
+        /**
+         * Draws the selected features touching the given rectangle into the rectangle of the image.
+         * They are drawn into the scratch raster of the current thread, the features lying inside of the rectangle
+         * extended by TILE_GUARD pixels with a clip, and only the pixels of the rectangle are copied back.
+         *
+         * @param _image  Image to draw on.
+         * @param _x      Left border of the rectangle.
+         * @param _y      Upper border of the rectangle.
+         * @param _width  Width of the rectangle.
+         * @param _height Height of the rectangle.
+         */
+        private void drawTile(BufferedImage _image, int _x, int _y, int _width, int _height) {
+            BufferedImage scratch = getScratch(_image);
+            /* Bulk copies of the pixels, Raster.setRect() copies them one by one. */
+            Object pixels = _image.getRaster().getDataElements(_x, _y, _width, _height, null);
+            scratch.getRaster().setDataElements(_x, _y, _width, _height, pixels);
+            Rectangle clip = new Rectangle(_x - TILE_GUARD, _y - TILE_GUARD, _width + 2 * TILE_GUARD,
+                    _height + 2 * TILE_GUARD);
+            Graphics2D g = scratch.createGraphics();
+            Graphics2D clipped = scratch.createGraphics();
+            clipped.clip(clip);
+            draw(g, clipped, clip, _x, _y, _width, _height);
+            clipped.dispose();
+            g.dispose();
+            scratch.getRaster().getDataElements(_x, _y, _width, _height, pixels);
+            _image.getRaster().setDataElements(_x, _y, _width, _height, pixels);
+        }
+
+        /**
+         * Provides the scratch image of the current thread, which has the size and type of the given image.
+         *
+         * @param _image Image of the frame.
+         * @return The scratch image, whose content is undefined.
+         */
+        private BufferedImage getScratch(BufferedImage _image) {
+            BufferedImage scratch = mScratch.get();
+            if (scratch == null || scratch.getWidth() != _image.getWidth()
+                    || scratch.getHeight() != _image.getHeight()
+                    || !scratch.getColorModel().equals(_image.getColorModel())) {
+                ColorModel colorModel = _image.getColorModel();
+                WritableRaster raster = colorModel.createCompatibleWritableRaster(_image.getWidth(),
+                        _image.getHeight());
+                scratch = new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+                mScratch.set(scratch);
+            }
+            return scratch;
+        }
+
+        /**
+         * Draws the selected features touching the given rectangle of the image, batch by batch.
+         * Within a batch the fills of all areas are drawn first, then their outlines, then the lines and finally
+         * the points and the pixels of degenerate features, so the state of the Graphics2D only changes a few times
+         * per batch. The Graphics2D keep their default transformation and thin stroke, shapes are converted into
+         * image coordinates by toImage() and wide strokes are drawn by drawShape(). Both Graphics2D draw on the
+         * same image and get the same state, every feature is drawn with one of them.
+         *
+         * @param _g       Graphics2D without clip, used for the features crossing the border of _clip.
+         * @param _clipped Graphics2D clipped to _clip, used for the features lying inside of it.
+         * @param _clip    Clip of _clipped, null to draw all features with _g.
+         * @param _x       Left border of the rectangle.
+         * @param _y       Upper border of the rectangle.
+         * @param _width   Width of the rectangle.
+         * @param _height  Height of the rectangle.
+         */
+        private void draw(Graphics2D _g, Graphics2D _clipped, Rectangle _clip, int _x, int _y, int _width,
+                          int _height) {
+            int[] partOffsets = mStore.getPartOffsets();
+            int[] ringOffsets = mStore.getRingOffsets();
+            int[] x = new int[1];
+            int[] y = new int[1];
+            Path2D.Float path = new Path2D.Float();
+            double[] coords = new double[6];
+            Graphics2D[] graphics = _clip == null ? new Graphics2D[]{_g} : new Graphics2D[]{_g, _clipped};
+            for (int b = 0; b < mBatchCount; b++) {
+                PresentationSchema schema = mPlan.getSchema(mBatches[b]);
+                int from = mBatchStarts[b];
+                int to = mBatchStarts[b + 1];
+
+                for (Graphics2D g : graphics) {
+                    g.setColor(schema.getFillColor());
+                }
+                for (int k = from; k < to; k++) {
+                    if (mStates[k] != DRAWN || !touches(k, _x, _y, _width, _height)) continue;
+                    int feature = mFeatures[k];
+                    if (mStore.getKind(feature) == FeatureStore.KIND_LINE
+                            || mStore.getKind(feature) == FeatureStore.KIND_POINT) continue;
+                    Graphics2D g = inside(k, _clip) ? _clipped : _g;
+                    for (int part = partOffsets[feature]; part < partOffsets[feature + 1]; part++) {
+                        g.fill(toImage(mGeometry.getPath(feature, part), mTranslateX, mTranslateY, path, coords));
+                    }
+                }
+                for (Graphics2D g : graphics) {
+                    g.setColor(schema.getLineColor());
+                }
+                for (int k = from; k < to; k++) {
+                    if (mStates[k] != DRAWN || !touches(k, _x, _y, _width, _height)) continue;
+                    int feature = mFeatures[k];
+                    if (mStore.getKind(feature) == FeatureStore.KIND_LINE
+                            || mStore.getKind(feature) == FeatureStore.KIND_POINT) continue;
+                    Graphics2D g = inside(k, _clip) ? _clipped : _g;
+                    for (int part = partOffsets[feature]; part < partOffsets[feature + 1]; part++) {
+                        drawShape(g, schema.getStroke(), mGeometry.getPath(feature, part), mTranslateX, mTranslateY,
+                                path, coords);
+                    }
+                }
+                for (int k = from; k < to; k++) {
+                    if (mStates[k] != DRAWN || !touches(k, _x, _y, _width, _height)) continue;
+                    int feature = mFeatures[k];
+                    if (mStore.getKind(feature) != FeatureStore.KIND_LINE) continue;
+                    Graphics2D g = inside(k, _clip) ? _clipped : _g;
+                    for (int part = partOffsets[feature]; part < partOffsets[feature + 1]; part++) {
+                        drawShape(g, schema.getLineStroke(), mGeometry.getPath(feature, part), mTranslateX,
+                                mTranslateY, path, coords);
+                    }
+                }
+                for (Graphics2D g : graphics) {
+                    g.setColor(schema.getFillColor());
+                }
+
+                /* Points and pixels are drawn at the pixels containing their rounded image coordinates. */
+                for (int k = from; k < to; k++) {
+                    int feature = mFeatures[k];
+                    if (mStates[k] == DRAWN && mStore.getKind(feature) == FeatureStore.KIND_POINT
+                            && touches(k, _x, _y, _width, _height)) {
+                        Graphics2D g = inside(k, _clip) ? _clipped : _g;
+                        for (int part = partOffsets[feature]; part < partOffsets[feature + 1]; part++) {
+                            mStore.getRing(ringOffsets[part], x, y);
+                            g.fill(toImage(POINT_SHAPE, getPixelX(x[0], y[0]), getPixelY(x[0], y[0]), path, coords));
+                        }
+                    } else if (mStates[k] == DEGENERATE && mStore.getKind(feature) != FeatureStore.KIND_LINE) {
+                        drawPixel(_g, k, _x, _y, _width, _height);
+                    }
+                }
+                for (Graphics2D g : graphics) {
+                    g.setColor(schema.getLineColor());
+                }
+                for (int k = from; k < to; k++) {
+                    int feature = mFeatures[k];
+                    if (mStates[k] == DRAWN && mStore.getKind(feature) == FeatureStore.KIND_POINT
+                            && touches(k, _x, _y, _width, _height)) {
+                        Graphics2D g = inside(k, _clip) ? _clipped : _g;
+                        for (int part = partOffsets[feature]; part < partOffsets[feature + 1]; part++) {
+                            mStore.getRing(ringOffsets[part], x, y);
+                            drawShape(g, schema.getStroke(), POINT_SHAPE, getPixelX(x[0], y[0]),
+                                    getPixelY(x[0], y[0]), path, coords);
+                        }
+                    } else if (mStates[k] == DEGENERATE && mStore.getKind(feature) == FeatureStore.KIND_LINE) {
+                        drawPixel(_g, k, _x, _y, _width, _height);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Provides the column of the pixel containing the given point, whose image coordinates are rounded like
+         * those of the paths.
+         *
+         * @param _x X coordinate of the point in map coordinates.
+         * @param _y Y coordinate of the point in map coordinates.
+         * @return The column of the pixel.
+         */
+        private int getPixelX(int _x, int _y) {
+            return (int) Math.floor(ScreenGeometry.snap(mLinear.getX(_x, _y)) + mTranslateX);
+        }
+
+        /**
+         * Provides the row of the pixel containing the given point, whose image coordinates are rounded like
+         * those of the paths.
+         *
+         * @param _x X coordinate of the point in map coordinates.
+         * @param _y Y coordinate of the point in map coordinates.
+         * @return The row of the pixel.
+         */
+        private int getPixelY(int _x, int _y) {
+            return (int) Math.floor(ScreenGeometry.snap(mLinear.getY(_x, _y)) + mTranslateY);
+        }
+
+        /**
+         * Draws the outline of a shape with the given stroke. Java2D strokes wide lines after converting them into
+         * image coordinates, where their rounding changes with the translation. So they are stroked without the
+         * translation and the outline of the stroke is filled, which gives the same pixels after a pan by whole
+         * pixels. Thin strokes are drawn directly.
+         *
+         * @param _g      Graphics2D to draw on, with its default transformation and thin stroke.
+         * @param _stroke Stroke to draw with.
+         * @param _shape  Shape without the translation, e.g. a path of mGeometry.
+         * @param _dx     Translation in x direction, rounded with ScreenGeometry.snap().
+         * @param _dy     Translation in y direction, rounded with ScreenGeometry.snap().
+         * @param _out    Path receiving the shape in image coordinates.
+         * @param _coords Array of at least six coordinates used by the path iterator.
+         */
+        private void drawShape(Graphics2D _g, BasicStroke _stroke, Shape _shape, double _dx, double _dy,
+                               Path2D.Float _out, double[] _coords) {
+            if (_stroke.getLineWidth() <= 1) {
+                _g.draw(toImage(_shape, _dx, _dy, _out, _coords));
+            } else {
+                _g.fill(toImage(_stroke.createStrokedShape(_shape), _dx, _dy, _out, _coords));
+            }
+        }
+
+        /**
+         * Copies a shape consisting of straight segments into the given path in image coordinates. The coordinates
+         * are rounded with ScreenGeometry.snap() and the translation is added, which is exact, and Java2D takes a
+         * Path2D.Float as it is. Segments longer than PIECE_LENGTH are split into pieces of equal length where
+         * they pass within BORDER_BAND pixels of the image, the split points only depend on the segment, not on
+         * the translation.
+         *
+         * @param _shape  Shape without the translation, e.g. a path of mGeometry.
+         * @param _dx     Translation in x direction, rounded with ScreenGeometry.snap().
+         * @param _dy     Translation in y direction, rounded with ScreenGeometry.snap().
+         * @param _out    Path receiving the result, which is reset before.
+         * @param _coords Array of at least six coordinates used by the path iterator.
+         * @return _out.
+         */
+        private Path2D.Float toImage(Shape _shape, double _dx, double _dy, Path2D.Float _out, double[] _coords) {
+            PathIterator it = _shape.getPathIterator(null);
+            _out.reset();
+            _out.setWindingRule(it.getWindingRule());
+            double startX = 0;
+            double startY = 0;
+            double lastX = 0;
+            double lastY = 0;
+            for (; !it.isDone(); it.next()) {
+                switch (it.currentSegment(_coords)) {
+                    case PathIterator.SEG_MOVETO:
+                        startX = lastX = ScreenGeometry.snap(_coords[0]);
+                        startY = lastY = ScreenGeometry.snap(_coords[1]);
+                        _out.moveTo(lastX + _dx, lastY + _dy);
+                        break;
+                    case PathIterator.SEG_LINETO: {
+                        double x = ScreenGeometry.snap(_coords[0]);
+                        double y = ScreenGeometry.snap(_coords[1]);
+                        split(lastX, lastY, x, y, _dx, _dy, _out);
+                        lastX = x;
+                        lastY = y;
+                        _out.lineTo(lastX + _dx, lastY + _dy);
+                        break;
+                    }
+                    case PathIterator.SEG_CLOSE:
+                        split(lastX, lastY, startX, startY, _dx, _dy, _out);
+                        lastX = startX;
+                        lastY = startY;
+                        _out.closePath();
+                        break;
+                    default:
+                        /* Drawn shapes only consist of straight segments. */
+                        break;
+                }
+            }
+            return _out;
+        }
+
+        /**
+         * Adds the split points of a segment to the given path, i.e. the points dividing it into pieces of at
+         * most PIECE_LENGTH pixels in x and y direction, as far as the pieces touch the image extended by
+         * BORDER_BAND pixels. The remaining pieces are left as they are, they lie outside of the image and
+         * its band.
+         *
+         * @param _x0  X coordinate of the start of the segment, without translation.
+         * @param _y0  Y coordinate of the start of the segment, without translation.
+         * @param _x1  X coordinate of the end of the segment, without translation.
+         * @param _y1  Y coordinate of the end of the segment, without translation.
+         * @param _dx  Translation in x direction, rounded with ScreenGeometry.snap().
+         * @param _dy  Translation in y direction, rounded with ScreenGeometry.snap().
+         * @param _out Path to add the split points to.
+         */
+        private void split(double _x0, double _y0, double _x1, double _y1, double _dx, double _dy,
+                           Path2D.Float _out) {
+            double dx = _x1 - _x0;
+            double dy = _y1 - _y0;
+            double pieces = Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) / PIECE_LENGTH);
+            if (pieces <= 1) return;
+            /* Liang-Barsky: the range of the segment parameter inside of the image extended by the band. */
+            double[] range = {0, 1};
+            double minX = -BORDER_BAND - _dx;
+            double minY = -BORDER_BAND - _dy;
+            double maxX = mWidth + BORDER_BAND - _dx;
+            double maxY = mHeight + BORDER_BAND - _dy;
+            if (!clipRange(-dx, _x0 - minX, range) || !clipRange(dx, maxX - _x0, range)
+                    || !clipRange(-dy, _y0 - minY, range) || !clipRange(dy, maxY - _y0, range)) {
+                return;
+            }
+            long from = Math.max(1, (long) Math.floor(range[0] * pieces));
+            long to = Math.min((long) pieces - 1, (long) Math.ceil(range[1] * pieces));
+            for (long i = from; i <= to; i++) {
+                _out.lineTo(ScreenGeometry.snap(_x0 + dx * i / pieces) + _dx,
+                        ScreenGeometry.snap(_y0 + dy * i / pieces) + _dy);
+            }
+        }
+
+        /**
+         * Restricts the parameter range of a segment to one side of a clip border, see Liang-Barsky.
+         *
+         * @param _p     Negated change of the distance to the border along the segment.
+         * @param _q     Distance of the start of the segment to the border, negative if it lies outside.
+         * @param _range Parameter range of the segment, which is narrowed in place.
+         * @return False if no part of the segment lies inside of the border.
+         */
+        private boolean clipRange(double _p, double _q, double[] _range) {
+            if (_p == 0) return _q >= 0;
+            double t = _q / _p;
+            if (_p < 0) {
+                if (t > _range[1]) return false;
+                _range[0] = Math.max(_range[0], t);
+            } else {
+                if (t < _range[0]) return false;
+                _range[1] = Math.min(_range[1], t);
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the given selected feature lies completely inside of the given clip, so the clip doesn't
+         * change how it is rasterised.
+         *
+         * @param _k    Position of the feature in the frame.
+         * @param _clip Clip, null if there is none.
+         * @return True if its bounds extended by VIEWPORT_MARGIN for strokes and points lie inside of the clip.
+         */
+        private boolean inside(int _k, Rectangle _clip) {
+            return _clip != null && mBoxes[4 * _k] - VIEWPORT_MARGIN >= _clip.x
+                    && mBoxes[4 * _k + 1] - VIEWPORT_MARGIN >= _clip.y
+                    && mBoxes[4 * _k + 2] + VIEWPORT_MARGIN <= _clip.x + _clip.width
+                    && mBoxes[4 * _k + 3] + VIEWPORT_MARGIN <= _clip.y + _clip.height;
+        }
+
+        /**
+         * Checks whether the given selected feature may touch the given rectangle of the image.
+         *
+         * @param _k      Position of the feature in the frame.
+         * @param _x      Left border of the rectangle.
+         * @param _y      Upper border of the rectangle.
+         * @param _width  Width of the rectangle.
+         * @param _height Height of the rectangle.
+         * @return True if its bounds extended by VIEWPORT_MARGIN intersect the rectangle.
+         */
+        private boolean touches(int _k, int _x, int _y, int _width, int _height) {
+            return mBoxes[4 * _k + 2] >= _x - VIEWPORT_MARGIN && mBoxes[4 * _k + 3] >= _y - VIEWPORT_MARGIN
+                    && mBoxes[4 * _k] <= _x + _width + VIEWPORT_MARGIN
+                    && mBoxes[4 * _k + 1] <= _y + _height + VIEWPORT_MARGIN;
+        }
+
+        /**
+         * Draws the given degenerate feature as a single pixel in the current color, if it lies in the given
+         * rectangle of the image and degenerate features are drawn at all.
+         *
+         * @param _g      Graphics2D to draw on.
+         * @param _k      Position of the feature in the frame.
+         * @param _x      Left border of the rectangle.
+         * @param _y      Upper border of the rectangle.
+         * @param _width  Width of the rectangle.
+         * @param _height Height of the rectangle.
+         */
+        private void drawPixel(Graphics2D _g, int _k, int _x, int _y, int _width, int _height) {
+            if (!mDrawDegenerate) return;
+            int px = (int) Math.floor((mBoxes[4 * _k] + mBoxes[4 * _k + 2]) / 2);
+            int py = (int) Math.floor((mBoxes[4 * _k + 1] + mBoxes[4 * _k + 3]) / 2);
+            if (px >= _x && px < _x + _width && py >= _y && py < _y + _height) {
+                _g.fillRect(px, py, 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Task drawing a range of tiles of a frame. It is split in halves until a single tile is left.
+     */
+    private static class TileTask extends RecursiveAction {
+        /**
+         * Version of the serialized form, required by RecursiveAction.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Frame to draw.
+         */
+        private final Frame mFrame;
+        /**
+         * Image to draw on.
+         */
+        private final BufferedImage mImage;
+        /**
+         * Number of tiles per row of the image.
+         */
+        private final int mColumns;
+        /**
+         * First tile of the range, counted row by row.
+         */
+        private final int mFrom;
+        /**
+         * Tile following the last tile of the range.
+         */
+        private final int mTo;
+
+        /**
+         * Constructs a new TileTask.
+         *
+         * @param _frame   Frame to draw.
+         * @param _image   Image to draw on.
+         * @param _columns Number of tiles per row of the image.
+         * @param _from    First tile of the range, counted row by row.
+         * @param _to      Tile following the last tile of the range.
+         */
+        private TileTask(Frame _frame, BufferedImage _image, int _columns, int _from, int _to) {
+            mFrame = _frame;
+            mImage = _image;
+            mColumns = _columns;
+            mFrom = _from;
+            mTo = _to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > 1) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new TileTask(mFrame, mImage, mColumns, mFrom, middle),
+                        new TileTask(mFrame, mImage, mColumns, middle, mTo));
+                return;
+            }
+            int x = (mFrom % mColumns) * TILE_SIZE;
+            int y = (mFrom / mColumns) * TILE_SIZE;
+            int width = Math.min(TILE_SIZE, mImage.getWidth() - x);
+            int height = Math.min(TILE_SIZE, mImage.getHeight() - y);
+            mFrame.drawTile(mImage, x, y, width, height);
+        }
+    }
+}
@@ -4,20 +4,29 @@ import java.awt.*;
 
 /**
  * This class provides storage for multiple variables used for drawing GeoObjectParts.
+ * The strokes are created once, so drawing doesn't create any objects per part.
  */
 public class PresentationSchema {
     /**
      * Color used for drawing lines of GeoObjectParts.
      */
-    private Color mLineColor;
+    private final Color mLineColor;
     /**
      * Color used for filling GeoObjectParts
      */
-    private Color mFillColor;
+    private final Color mFillColor;
     /**
      * LineWidth used for drawing lines.
      */
-    private float mLineWidth;
+    private final float mLineWidth;
+    /**
+     * Stroke of mLineWidth used for the outlines of areas and points.
+     */
+    private final BasicStroke mStroke;
+    /**
+     * Stroke of twice mLineWidth used for lines.
+     */
+    private final BasicStroke mLineStroke;
 
     /**
      * Constructs new PresentationSchema with given variables.
@@ -29,18 +38,67 @@ public class PresentationSchema {
         mFillColor = _fillColor;
         mLineColor = _lineColor;
         mLineWidth = _lineWidth;
+        mStroke = new BasicStroke(_lineWidth);
+        mLineStroke = new BasicStroke(_lineWidth * 2);
+    }
+
+    /**
+     * Get method of the mLineColor variable.
+     * @return Color used for drawing lines and outlines.
+     */
+    public Color getLineColor() {
+        return mLineColor;
+    }
+
+    /**
+     * Get method of the mFillColor variable.
+     * @return Color used for filling areas and points.
+     */
+    public Color getFillColor() {
+        return mFillColor;
+    }
+
+    /**
+     * Get method of the mStroke variable.
+     * @return Stroke used for the outlines of areas and points.
+     */
+    public BasicStroke getStroke() {
+        return mStroke;
+    }
+
+    /**
+     * Get method of the mLineStroke variable.
+     * @return Stroke used for lines, twice as wide as getStroke().
+     */
+    public BasicStroke getLineStroke() {
+        return mLineStroke;
     }
 
     /**
      * This method lets all GeoObjectParts of the given GeoObject draw themselves with its variables.
      * @param _g Graphics2D the GeoObjectParts should draw themselves on.
      * @param _obj Given GeoObject.
-     * @param _m Matrix used for adjusting the GeoObjectParts coordinates.
+     * @param _t Transformation converting the coordinates of the GeoObjectParts into window coordinates.
      */
-    public void paint(Graphics2D _g, GeoObject _obj, Matrix _m) {
+    public void paint(Graphics2D _g, GeoObject _obj, Transform2D _t) {
         for(GeoObjectPart part: _obj.getPart()){
-            _g.setStroke(new BasicStroke(mLineWidth));
-            part.draw(_g,_m,mLineColor,mFillColor);
+            _g.setStroke(part instanceof GeoLine ? mLineStroke : mStroke);
+            part.draw(_g,_t,mLineColor,mFillColor);
+        }
+    }
+
+    /**
+     * This method draws all parts of the given feature of a FeatureStore with its variables.
+     * @param _g Graphics2D the parts should be drawn on.
+     * @param _store FeatureStore containing the feature.
+     * @param _feature Index of the feature.
+     * @param _t Transformation converting the coordinates of the parts into window coordinates.
+     */
+    public void paint(Graphics2D _g, FeatureStore _store, int _feature, Transform2D _t) {
+        int[] partOffsets = _store.getPartOffsets();
+        _g.setStroke(_store.getKind(_feature) == FeatureStore.KIND_LINE ? mLineStroke : mStroke);
+        for (int part = partOffsets[_feature]; part < partOffsets[_feature + 1]; part++) {
+            _store.drawPart(_g, _feature, part, _t, mLineColor, mFillColor);
         }
     }
 }
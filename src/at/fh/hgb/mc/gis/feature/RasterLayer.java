@@ -0,0 +1,175 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * This class keeps one layer of the map drawn into a transparent image of the window, together with the
+ * transformation it has been drawn with.
+ * <p>
+ * As long as the transformation doesn't change, the image is reused as it is, so showing or hiding a layer
+ * only composes the cached images again. If the view has only been panned by whole pixels, the image is moved
+ * by the pan and only the uncovered strips are drawn again. Any other change of the view, a new size of the
+ * window or invalidate() draw the whole layer again.
+ * <p>
+ * Java2D rasterises lines crossing the border of an image differently from the same lines inside of it. MapRenderer
+ * keeps these differences within MapRenderer.BORDER_BAND pixels of the border and draws a view panned by whole pixels
+ * with exactly moved coordinates. So the image extends the window by GUARD pixels on every side, and a pan also
+ * draws the GUARD pixels next to the uncovered strips again, which gives the same pixels as drawing the whole layer
+ * again. Painters not drawing with MapRenderer have to keep the same limit.
+ */
+public class RasterLayer {
+    /**
+     * Maximal distance from a whole pixel a pan may have to be reused by moving the image.
+     */
+    private static final double PAN_EPSILON = 1e-6;
+    /**
+     * Width in pixels of the band around the window that is drawn as well, the band along the border of an image
+     * whose pixels may differ from those of a larger image.
+     */
+    private static final int GUARD = MapRenderer.BORDER_BAND;
+    /**
+     * Painter drawing the content of the layer.
+     */
+    private final ILayerPainter mPainter;
+    /**
+     * Image of the layer, null before it has been drawn the first time.
+     */
+    private BufferedImage mImage = null;
+    /**
+     * Transformation mImage has been drawn with, including the offset of GUARD pixels.
+     * Null if the image isn't valid.
+     */
+    private Transform2D mTransform = null;
+    /**
+     * Flag indicating whether the layer is composed into the map.
+     */
+    private boolean mVisible = true;
+
+    /**
+     * Constructs a new RasterLayer, which is drawn on its first update.
+     *
+     * @param _painter Painter drawing the content of the layer.
+     */
+    public RasterLayer(ILayerPainter _painter) {
+        mPainter = _painter;
+    }
+
+    /**
+     * Set method of the mVisible variable. A hidden layer keeps its image, but isn't updated or composed.
+     *
+     * @param _visible True to compose the layer into the map.
+     */
+    public void setVisible(boolean _visible) {
+        mVisible = _visible;
+    }
+
+    /**
+     * Get method of the mVisible variable.
+     *
+     * @return True if the layer is composed into the map.
+     */
+    public boolean isVisible() {
+        return mVisible;
+    }
+
+    /**
+     * Marks the image as outdated, e.g. because the data or the style of the layer have changed.
+     * It is drawn again completely on the next update.
+     */
+    public void invalidate() {
+        mTransform = null;
+    }
+
+    /**
+     * Brings the image of the layer up to date for the given size and transformation, if the layer is visible.
+     *
+     * @param _width  Width of the window.
+     * @param _height Height of the window.
+     * @param _t      Current transformation of the view.
+     * @return The number of pixels that have been drawn again.
+     */
+    public long update(int _width, int _height, Transform2D _t) {
+        if (!mVisible) return 0;
+        int width = _width + 2 * GUARD;
+        int height = _height + 2 * GUARD;
+        if (mImage == null || mImage.getWidth() != width || mImage.getHeight() != height) {
+            mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            mTransform = null;
+        }
+        Transform2D transform = new Transform2D(_t);
+        transform.translate(GUARD, GUARD);
+        if (mTransform != null && mTransform.hasSameLinearPart(transform)) {
+            double dx = transform.getTranslateX() - mTransform.getTranslateX();
+            double dy = transform.getTranslateY() - mTransform.getTranslateY();
+            long x = Math.round(dx);
+            long y = Math.round(dy);
+            if (Math.abs(dx - x) <= PAN_EPSILON && Math.abs(dy - y) <= PAN_EPSILON
+                    && Math.abs(x) < width && Math.abs(y) < height) {
+                mTransform = transform;
+                return pan((int) x, (int) y);
+            }
+        }
+        mTransform = transform;
+        return paint(new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Draws the image of the layer onto the given Graphics2D, if the layer is visible.
+     *
+     * @param _g Graphics2D of the map.
+     */
+    public void compose(Graphics2D _g) {
+        if (mVisible && mImage != null) {
+            _g.drawImage(mImage, -GUARD, -GUARD, null);
+        }
+    }
+
+    /**
+     * Moves the image by the given pan and draws the uncovered strips, widened by GUARD pixels.
+     *
+     * @param _dx Pan in x direction in pixels, less than the width of the image.
+     * @param _dy Pan in y direction in pixels, less than the height of the image.
+     * @return The number of pixels that have been drawn again.
+     */
+    private long pan(int _dx, int _dy) {
+        if (_dx == 0 && _dy == 0) return 0;
+        int width = mImage.getWidth();
+        int height = mImage.getHeight();
+        Graphics2D g = mImage.createGraphics();
+        /* Transparent pixels have to replace the old ones instead of being blended over them. */
+        g.setComposite(AlphaComposite.Src);
+        g.copyArea(Math.max(0, -_dx), Math.max(0, -_dy), width - Math.abs(_dx), height - Math.abs(_dy), _dx, _dy);
+        g.dispose();
+        /* The pixels drawn at the old border of the image are drawn again along with the uncovered strips. */
+        int stripWidth = Math.min(width, Math.abs(_dx) + GUARD);
+        int stripHeight = Math.min(height, Math.abs(_dy) + GUARD);
+        long pixels = 0;
+        /* The vertical strip spans the whole height, the horizontal one only the columns next to it. */
+        if (_dx != 0) {
+            pixels += paint(new Rectangle(_dx > 0 ? 0 : width - stripWidth, 0, stripWidth, height));
+        }
+        if (_dy != 0) {
+            int x = _dx > 0 ? stripWidth : 0;
+            int columns = _dx != 0 ? width - stripWidth : width;
+            pixels += paint(new Rectangle(x, _dy > 0 ? 0 : height - stripHeight, columns, stripHeight));
+        }
+        return pixels;
+    }
+
+    /**
+     * Clears the given rectangle of the image and lets the painter draw it.
+     *
+     * @param _region Rectangle of the image.
+     * @return The number of pixels of the rectangle.
+     */
+    private long paint(Rectangle _region) {
+        if (_region.isEmpty()) return 0;
+        Graphics2D g = mImage.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fill(_region);
+        g.dispose();
+        mPainter.paint(mImage, mTransform, _region);
+        return (long) _region.width * _region.height;
+    }
+}
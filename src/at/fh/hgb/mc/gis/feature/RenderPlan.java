@@ -0,0 +1,160 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class provides the drawing order of a FeatureStore, built once per store and drawing context.
+ * <p>
+ * The features are sorted into batches that share a PresentationSchema, so a frame only changes the state of
+ * the Graphics2D once per batch instead of once per feature. The layers of a store follow each other in
+ * drawing order (see TileCache.merge()), so the types are ranked by their first feature: all types of a layer
+ * rank before the types of the next layer. Consecutive types with the same schema form one batch, within a batch
+ * the features keep their order in the store. Features of a type without schema aren't part of the plan.
+ */
+public class RenderPlan {
+    /**
+     * FeatureStore the plan has been built for.
+     */
+    private final FeatureStore mStore;
+    /**
+     * Drawing context the plan has been built with.
+     */
+    private final ADrawingContext mContext;
+    /**
+     * Position of every feature in the drawing order, -1 if it isn't drawn.
+     */
+    private final int[] mRanks;
+    /**
+     * Feature at every position of the drawing order.
+     */
+    private final int[] mOrder;
+    /**
+     * First position of every batch in the drawing order, followed by the number of drawn features.
+     */
+    private final int[] mBatchStarts;
+    /**
+     * PresentationSchema of every batch.
+     */
+    private final PresentationSchema[] mSchemas;
+
+    /**
+     * Builds the plan for the given store.
+     *
+     * @param _store   FeatureStore to draw.
+     * @param _context Drawing context providing the schemas of the features.
+     */
+    public RenderPlan(FeatureStore _store, ADrawingContext _context) {
+        mStore = _store;
+        mContext = _context;
+        int n = _store.size();
+
+        /* Batch of every type, in the order of the first feature of the type. */
+        Map<Integer, Integer> typeBatches = new HashMap<>();
+        PresentationSchema[] schemas = new PresentationSchema[16];
+        int batches = 0;
+        int[] featureBatches = new int[n];
+        for (int i = 0; i < n; i++) {
+            int type = _store.getType(i);
+            Integer batch = typeBatches.get(type);
+            if (batch == null) {
+                PresentationSchema schema = _context.getSchema(type);
+                if (schema == null) {
+                    batch = -1;
+                } else if (batches > 0 && schemas[batches - 1] == schema) {
+                    batch = batches - 1;
+                } else {
+                    if (batches == schemas.length) {
+                        PresentationSchema[] grown = new PresentationSchema[batches * 2];
+                        System.arraycopy(schemas, 0, grown, 0, batches);
+                        schemas = grown;
+                    }
+                    schemas[batches] = schema;
+                    batch = batches++;
+                }
+                typeBatches.put(type, batch);
+            }
+            featureBatches[i] = batch;
+        }
+
+        /* Counting sort by batch, stable so the features of a batch keep their order. */
+        mBatchStarts = new int[batches + 1];
+        for (int batch : featureBatches) {
+            if (batch >= 0) mBatchStarts[batch + 1]++;
+        }
+        for (int b = 0; b < batches; b++) {
+            mBatchStarts[b + 1] += mBatchStarts[b];
+        }
+        int[] next = new int[batches];
+        System.arraycopy(mBatchStarts, 0, next, 0, batches);
+        mRanks = new int[n];
+        mOrder = new int[mBatchStarts[batches]];
+        for (int i = 0; i < n; i++) {
+            int batch = featureBatches[i];
+            mRanks[i] = batch >= 0 ? next[batch]++ : -1;
+            if (batch >= 0) mOrder[mRanks[i]] = i;
+        }
+        mSchemas = new PresentationSchema[batches];
+        System.arraycopy(schemas, 0, mSchemas, 0, batches);
+    }
+
+    /**
+     * Checks whether this plan has been built for the given store and drawing context.
+     *
+     * @param _store   FeatureStore to draw.
+     * @param _context Drawing context providing the schemas.
+     * @return True if the plan can be used for them.
+     */
+    public boolean matches(FeatureStore _store, ADrawingContext _context) {
+        return mStore == _store && mContext == _context;
+    }
+
+    /**
+     * Provides the position of the given feature in the drawing order.
+     *
+     * @param _feature Index of the feature.
+     * @return The position, -1 if the feature isn't drawn.
+     */
+    public int getRank(int _feature) {
+        return mRanks[_feature];
+    }
+
+    /**
+     * Provides the feature at the given position of the drawing order.
+     *
+     * @param _rank Position in the drawing order.
+     * @return Index of the feature.
+     */
+    public int getFeature(int _rank) {
+        return mOrder[_rank];
+    }
+
+    /**
+     * Provides the number of batches.
+     *
+     * @return The number of batches.
+     */
+    public int getBatchCount() {
+        return mSchemas.length;
+    }
+
+    /**
+     * Provides the position following the last feature of the given batch in the drawing order.
+     *
+     * @param _batch Index of the batch.
+     * @return The end of the batch.
+     */
+    public int getBatchEnd(int _batch) {
+        return mBatchStarts[_batch + 1];
+    }
+
+    /**
+     * Provides the PresentationSchema of the given batch.
+     *
+     * @param _batch Index of the batch.
+     * @return The schema of all features of the batch.
+     */
+    public PresentationSchema getSchema(int _batch) {
+        return mSchemas[_batch];
+    }
+}
@@ -0,0 +1,230 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * This class provides a static R-tree over the bounding boxes of the features of a FeatureStore.
+ * The tree is bulk loaded with the Sort-Tile-Recursive algorithm: the entries of a level are sorted by the
+ * x coordinate of their centres, cut into vertical slices, sorted by the y coordinate within every slice
+ * and packed into nodes of NODE_CAPACITY consecutive entries, which form the next level.
+ * Building the tree only sorts primitive arrays, so it can be rebuilt whenever the displayed data changes.
+ * <p>
+ * Every level is stored as flat arrays: the bounding boxes of its entries (minX, minY, maxX, maxY) and,
+ * above the leaves, the index of the first child of every node in the level below. Level 0 holds the features.
+ * The tree is immutable once built and can be queried by several threads.
+ */
+public class STRTree {
+    /**
+     * Maximal number of children of a node.
+     */
+    private static final int NODE_CAPACITY = 16;
+
+    /**
+     * Number of entries of every level, from the features up to the root.
+     */
+    private final int[] mLevelSizes;
+    /**
+     * Bounding boxes of the entries of every level, four ints per entry.
+     */
+    private final int[][] mLevelBoxes;
+    /**
+     * Index of the first child of every entry of every level in the level below. For level 0 these are the
+     * indices of the features in the FeatureStore.
+     */
+    private final int[][] mLevelChildren;
+
+    /**
+     * Builds a new STRTree over the bounding boxes of all features of the given store.
+     * Features without vertices are left out.
+     *
+     * @param _store Store containing the features.
+     */
+    public STRTree(FeatureStore _store) {
+        int[] bounds = _store.getBoundsColumn();
+        int count = 0;
+        for (int i = 0; i < _store.size(); i++) {
+            if (bounds[4 * i] <= bounds[4 * i + 2]) count++;
+        }
+        int[] boxes = new int[4 * count];
+        int[] children = new int[count];
+        int n = 0;
+        for (int i = 0; i < _store.size(); i++) {
+            if (bounds[4 * i] > bounds[4 * i + 2]) continue;
+            System.arraycopy(bounds, 4 * i, boxes, 4 * n, 4);
+            children[n++] = i;
+        }
+
+        int levels = 1;
+        for (int size = count; size > 1; size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY) {
+            levels++;
+        }
+        mLevelSizes = new int[levels];
+        mLevelBoxes = new int[levels][];
+        mLevelChildren = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            if (level > 0) {
+                int size = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+                int[] parentBoxes = new int[4 * size];
+                int[] parentChildren = new int[size];
+                for (int node = 0; node < size; node++) {
+                    int first = node * NODE_CAPACITY;
+                    int last = Math.min(first + NODE_CAPACITY, count);
+                    pack(boxes, first, last, parentBoxes, node);
+                    parentChildren[node] = first;
+                }
+                count = size;
+                boxes = parentBoxes;
+                children = parentChildren;
+            }
+            /* The root level isn't packed any further, so it doesn't need to be sorted. */
+            if (level < levels - 1) sort(boxes, children, count);
+            mLevelSizes[level] = count;
+            mLevelBoxes[level] = boxes;
+            mLevelChildren[level] = children;
+        }
+    }
+
+    /**
+     * Provides the features whose bounding boxes intersect the given window.
+     *
+     * @param _window Window in map coordinates.
+     * @return Indices of the features in ascending order, which is the order they are drawn in.
+     */
+    public int[] query(Rectangle _window) {
+        return query(_window.x, _window.y, _window.x + _window.width, _window.y + _window.height);
+    }
+
+    /**
+     * Provides the features whose bounding boxes contain the given point, borders included.
+     *
+     * @param _x X coordinate of the point in map coordinates.
+     * @param _y Y coordinate of the point in map coordinates.
+     * @return Indices of the features in ascending order.
+     */
+    public int[] query(int _x, int _y) {
+        return query(_x, _y, _x, _y);
+    }
+
+    /**
+     * Provides the number of features in the tree.
+     *
+     * @return The number of features with at least one vertex.
+     */
+    public int size() {
+        return mLevelSizes[0];
+    }
+
+    /**
+     * Provides the features whose bounding boxes intersect the given box, borders included.
+     * The tree is traversed depth first with an explicit stack of entries.
+     *
+     * @param _minX Left border of the box.
+     * @param _minY Upper border of the box.
+     * @param _maxX Right border of the box.
+     * @param _maxY Lower border of the box.
+     * @return Indices of the features in ascending order.
+     */
+    private int[] query(int _minX, int _minY, int _maxX, int _maxY) {
+        int[] result = new int[64];
+        int found = 0;
+        int top = mLevelSizes.length - 1;
+        if (mLevelSizes[0] == 0) return new int[0];
+
+        /* Every level holds at most NODE_CAPACITY entries on the stack at once. */
+        int[] stackLevel = new int[NODE_CAPACITY * (top + 1)];
+        int[] stackEntry = new int[stackLevel.length];
+        int depth = 0;
+        for (int e = 0; e < mLevelSizes[top]; e++) {
+            stackLevel[depth] = top;
+            stackEntry[depth++] = e;
+        }
+        while (depth > 0) {
+            depth--;
+            int level = stackLevel[depth];
+            int entry = stackEntry[depth];
+            int[] boxes = mLevelBoxes[level];
+            int b = 4 * entry;
+            if (boxes[b] > _maxX || boxes[b + 1] > _maxY || boxes[b + 2] < _minX || boxes[b + 3] < _minY) continue;
+
+            if (level == 0) {
+                if (found == result.length) result = Arrays.copyOf(result, 2 * found);
+                result[found++] = mLevelChildren[0][entry];
+            } else {
+                int first = mLevelChildren[level][entry];
+                int last = Math.min(first + NODE_CAPACITY, mLevelSizes[level - 1]);
+                for (int child = first; child < last; child++) {
+                    stackLevel[depth] = level - 1;
+                    stackEntry[depth++] = child;
+                }
+            }
+        }
+        result = Arrays.copyOf(result, found);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Calculates the bounding box of the given entries into the box of a node.
+     *
+     * @param _boxes     Boxes of the entries.
+     * @param _first     Index of the first entry.
+     * @param _last      Index after the last entry.
+     * @param _nodeBoxes Boxes of the nodes.
+     * @param _node      Index of the node.
+     */
+    private static void pack(int[] _boxes, int _first, int _last, int[] _nodeBoxes, int _node) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int e = _first; e < _last; e++) {
+            minX = Math.min(minX, _boxes[4 * e]);
+            minY = Math.min(minY, _boxes[4 * e + 1]);
+            maxX = Math.max(maxX, _boxes[4 * e + 2]);
+            maxY = Math.max(maxY, _boxes[4 * e + 3]);
+        }
+        int b = 4 * _node;
+        _nodeBoxes[b] = minX;
+        _nodeBoxes[b + 1] = minY;
+        _nodeBoxes[b + 2] = maxX;
+        _nodeBoxes[b + 3] = maxY;
+    }
+
+    /**
+     * Sorts the entries of a level into Sort-Tile-Recursive order: by the x coordinate of their centres,
+     * then within vertical slices of about sqrt(count / NODE_CAPACITY) nodes by the y coordinate of their centres.
+     *
+     * @param _boxes    Boxes of the entries, reordered in place.
+     * @param _children Children of the entries, reordered in place.
+     * @param _count    Number of entries.
+     */
+    private static void sort(int[] _boxes, int[] _children, int _count) {
+        int nodes = (_count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = ((nodes + slices - 1) / slices) * NODE_CAPACITY;
+
+        /* The sort keys combine the doubled centre coordinate with the index of the entry. */
+        long[] keys = new long[_count];
+        for (int e = 0; e < _count; e++) {
+            keys[e] = ((long) _boxes[4 * e] + _boxes[4 * e + 2]) << 31 | e;
+        }
+        Arrays.sort(keys);
+        for (int start = 0; start < _count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, _count);
+            for (int i = start; i < end; i++) {
+                int e = (int) (keys[i] & Integer.MAX_VALUE);
+                keys[i] = ((long) _boxes[4 * e + 1] + _boxes[4 * e + 3]) << 31 | e;
+            }
+            Arrays.sort(keys, start, end);
+        }
+
+        int[] boxes = Arrays.copyOf(_boxes, 4 * _count);
+        int[] children = Arrays.copyOf(_children, _count);
+        for (int i = 0; i < _count; i++) {
+            int e = (int) (keys[i] & Integer.MAX_VALUE);
+            System.arraycopy(boxes, 4 * e, _boxes, 4 * i, 4);
+            _children[i] = children[e];
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class provides the lines and areas of a FeatureStore simplified for one zoom level.
+ * <p>
+ * The rings are converted with the scale and rotation of the view, freed of consecutive vertices falling onto
+ * the same pixel and simplified with Douglas-Peucker within a tolerance in pixels. The resulting paths don't
+ * contain the translation of the view, which is applied while drawing, so they are reused for every pan at the
+ * same scale and rotation. Their coordinates are rounded to multiples of 1 / GRID pixels, see snap(). Paths are
+ * created on their first use and kept until their estimated memory exceeds the limit given to the constructor,
+ * then all of them are dropped and created again as needed.
+ * Points aren't simplified. A ScreenGeometry may be used by several threads at once.
+ */
+public class ScreenGeometry {
+    /**
+     * FeatureStore the paths are created from.
+     */
+    private final FeatureStore mStore;
+    /**
+     * Scale and rotation of the zoom level, without translation.
+     */
+    private final Transform2D mLinear;
+    /**
+     * Maximal distance in pixels a removed vertex may have from the simplified ring.
+     */
+    private final double mTolerance;
+    /**
+     * Simplified paths per part of mStore, null if the part hasn't been drawn yet.
+     * The array publishes the paths safely to all threads drawing concurrently.
+     */
+    private final AtomicReferenceArray<Path2D.Double> mPaths;
+    /**
+     * Maximal estimated memory in bytes used by the cached paths.
+     */
+    private final long mMaxBytes;
+    /**
+     * Estimated memory in bytes used by the cached paths.
+     */
+    private final AtomicLong mBytes = new AtomicLong();
+    /**
+     * Estimated memory in bytes of a path without its vertices.
+     */
+    private static final int PATH_BYTES = 80;
+    /**
+     * Estimated memory in bytes of one vertex of a path, two doubles and a segment type.
+     */
+    private static final int VERTEX_BYTES = 17;
+    /**
+     * Number of steps per pixel the coordinates of the paths are rounded to, a power of two.
+     */
+    private static final double GRID = 256;
+    /**
+     * Constructs a new, empty ScreenGeometry.
+     *
+     * @param _store     FeatureStore the paths are created from.
+     * @param _t         Transformation of the view, only its scale and rotation are used.
+     * @param _tolerance Maximal distance in pixels a removed vertex may have from the simplified ring,
+     *                   0 to only remove duplicate pixels.
+     * @param _maxBytes  Maximal estimated memory in bytes used by the cached paths.
+     */
+    public ScreenGeometry(FeatureStore _store, Transform2D _t, double _tolerance, long _maxBytes) {
+        mStore = _store;
+        mLinear = _t.getLinearPart();
+        mTolerance = _tolerance;
+        mMaxBytes = _maxBytes;
+        mPaths = new AtomicReferenceArray<>(_store.getPartOffsets()[_store.size()]);
+    }
+
+    /**
+     * Estimates the memory used by this ScreenGeometry, i.e. by the cached paths and the array referencing them.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getMemorySize() {
+        return 16 + 8L * mPaths.length() + mBytes.get();
+    }
+
+    /**
+     * Provides the FeatureStore the paths are created from.
+     *
+     * @return The FeatureStore.
+     */
+    public FeatureStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Checks whether this ScreenGeometry can be used to draw the given store with the given transformation.
+     *
+     * @param _store FeatureStore to draw.
+     * @param _t     Transformation of the view.
+     * @return True if the store is the same and the transformation only differs by a pan.
+     */
+    public boolean matches(FeatureStore _store, Transform2D _t) {
+        return mStore == _store && mLinear.hasSameLinearPart(_t);
+    }
+
+    /**
+     * Provides the simplified path of the given part of a line or an area, which is created on the first call.
+     * The path doesn't contain the translation of the view, which has to be added while drawing.
+     *
+     * @param _feature Index of the feature, which mustn't be a point.
+     * @param _part    Index of the part, which must belong to the feature.
+     * @return The path, which must not be modified.
+     */
+    public Path2D.Double getPath(int _feature, int _part) {
+        Path2D.Double path = mPaths.get(_part);
+        if (path == null) {
+            /* Threads drawing the same part at the same time may both create it, the paths are equal. */
+            path = createPath(_part, mStore.getKind(_feature) == FeatureStore.KIND_LINE);
+            if (mBytes.get() > mMaxBytes) {
+                /* Concurrent threads may still add a few paths while the cache is cleared, the limit is approximate. */
+                for (int i = 0; i < mPaths.length(); i++) {
+                    mPaths.set(i, null);
+                }
+                mBytes.set(0);
+            }
+            mPaths.set(_part, path);
+        }
+        return path;
+    }
+
+    /**
+     * Creates the simplified path of the given part and adds its estimated memory to mBytes.
+     *
+     * @param _part Index of the part.
+     * @param _line True if the part is a line, which isn't closed.
+     * @return The new path without the translation of the view.
+     */
+    private Path2D.Double createPath(int _part, boolean _line) {
+        int[] ringOffsets = mStore.getRingOffsets();
+        int[] vertexOffsets = mStore.getVertexOffsets();
+        int from = ringOffsets[_part];
+        int to = ringOffsets[_part + 1];
+        int size = 0;
+        for (int r = from; r < to; r++) {
+            size = Math.max(size, vertexOffsets[r + 1] - vertexOffsets[r]);
+        }
+        int[] x = new int[size];
+        int[] y = new int[size];
+        double[] xy = new double[2 * size];
+        Path2D.Double path = new Path2D.Double(_line ? Path2D.WIND_NON_ZERO : Path2D.WIND_EVEN_ODD);
+        long vertices = 0;
+        for (int r = from; r < to; r++) {
+            int n = mStore.getRing(r, x, y);
+            if (n == 0) continue;
+            for (int i = 0; i < n; i++) {
+                xy[2 * i] = x[i];
+                xy[2 * i + 1] = y[i];
+            }
+            mLinear.transform(xy, 0, xy, 0, n);
+            n = simplify(xy, removeDuplicates(xy, n));
+            vertices += n;
+            path.moveTo(snap(xy[0]), snap(xy[1]));
+            for (int i = 1; i < n; i++) {
+                path.lineTo(snap(xy[2 * i]), snap(xy[2 * i + 1]));
+            }
+            if (!_line) {
+                path.closePath();
+            }
+        }
+        path.trimToSize();
+        mBytes.addAndGet(PATH_BYTES + VERTEX_BYTES * vertices);
+        return path;
+    }
+
+    /**
+     * Rounds the given coordinate in pixels to a multiple of 1 / GRID. The sum of two rounded coordinates is
+     * exact, and so is its conversion to float below 2^15 pixels, which covers the image Java2D rasterises.
+     * So a path drawn with a translation rounded as well gives exactly the same coordinates moved by a whole
+     * pixel when the view is panned by one, which the pan of RasterLayer relies on.
+     *
+     * @param _v Coordinate in pixels.
+     * @return The rounded coordinate.
+     */
+    static double snap(double _v) {
+        return Math.rint(_v * GRID) / GRID;
+    }
+
+    /**
+     * Removes consecutive vertices that fall onto the same pixel. The pixels are those of the untranslated
+     * coordinates, which are shifted against the screen pixels by the fractional part of the translation of the
+     * view. So merged vertices are less than a pixel apart on screen, but may lie in neighbouring screen pixels.
+     *
+     * @param _xy Interleaved coordinates of the vertices, which are compacted in place.
+     * @param _n  Number of vertices.
+     * @return The remaining number of vertices.
+     */
+    private static int removeDuplicates(double[] _xy, int _n) {
+        int last = 0;
+        for (int i = 1; i < _n; i++) {
+            if (Math.floor(_xy[2 * i]) != Math.floor(_xy[2 * last])
+                    || Math.floor(_xy[2 * i + 1]) != Math.floor(_xy[2 * last + 1])) {
+                last++;
+                _xy[2 * last] = _xy[2 * i];
+                _xy[2 * last + 1] = _xy[2 * i + 1];
+            }
+        }
+        return last + 1;
+    }
+
+    /**
+     * Simplifies the given vertices with Douglas-Peucker: a range is replaced by its first and last vertex
+     * if no vertex in between is farther than mTolerance from their connection, otherwise it is split at the
+     * farthest vertex. The ranges are processed with an explicit stack, so long rings can't overflow the call stack.
+     *
+     * @param _xy Interleaved coordinates of the vertices, which are compacted in place.
+     * @param _n  Number of vertices.
+     * @return The remaining number of vertices.
+     */
+    private int simplify(double[] _xy, int _n) {
+        if (_n <= 2 || mTolerance <= 0) return _n;
+        boolean[] keep = new boolean[_n];
+        int[] stack = new int[64];
+        keep[0] = true;
+        keep[_n - 1] = true;
+        double tolerance2 = mTolerance * mTolerance;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = _n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double dx = _xy[2 * last] - _xy[2 * first];
+            double dy = _xy[2 * last + 1] - _xy[2 * first + 1];
+            double length2 = dx * dx + dy * dy;
+            double max = 0;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double px = _xy[2 * i] - _xy[2 * first];
+                double py = _xy[2 * i + 1] - _xy[2 * first + 1];
+                /* Closed rings start and end at the same vertex, there the distance to that vertex is used. */
+                double distance2;
+                if (length2 == 0) {
+                    distance2 = px * px + py * py;
+                } else {
+                    double cross = px * dy - py * dx;
+                    distance2 = cross * cross / length2;
+                }
+                if (distance2 > max) {
+                    max = distance2;
+                    farthest = i;
+                }
+            }
+            if (max > tolerance2) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < _n; i++) {
+            if (keep[i]) {
+                _xy[2 * count] = _xy[2 * i];
+                _xy[2 * count + 1] = _xy[2 * i + 1];
+                count++;
+            }
+        }
+        return count;
+    }
+}
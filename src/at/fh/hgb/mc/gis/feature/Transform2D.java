@@ -0,0 +1,372 @@
+package at.fh.hgb.mc.gis.feature;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+
+/**
+ * This class provides a two-dimensional affine transformation stored as six primitive doubles:
+ * x' = m11 * x + m12 * y + m13 and y' = m21 * x + m22 * y + m23.
+ * <p>
+ * It is the drawing counterpart of Matrix. Matrix provides the initial transformations like zoomToFit(),
+ * Transform2D holds the view transformation and converts coordinates with it. Whole coordinate arrays are converted into buffers provided by the caller,
+ * so no objects are created per vertex. Integer coordinates are truncated exactly like
+ * Matrix.multiply(Polygon) and Matrix.multiply(Point) do, so both produce the same pixels.
+ * <p>
+ * A Transform2D can be changed in place by translate(), scale(), rotate() and preConcatenate(), so panning and
+ * zooming the view don't create temporary matrices. The inverse is cached and only recalculated after a change.
+ */
+public class Transform2D {
+    /**
+     * Factor of x in the new x coordinate.
+     */
+    private double mM11;
+    /**
+     * Factor of y in the new x coordinate.
+     */
+    private double mM12;
+    /**
+     * Translation of the new x coordinate.
+     */
+    private double mM13;
+    /**
+     * Factor of x in the new y coordinate.
+     */
+    private double mM21;
+    /**
+     * Factor of y in the new y coordinate.
+     */
+    private double mM22;
+    /**
+     * Translation of the new y coordinate.
+     */
+    private double mM23;
+    /**
+     * Inverse of this transformation, null if it hasn't been calculated since the last change.
+     */
+    private Transform2D mInverse;
+
+    /**
+     * Constructs a new Transform2D with the given values.
+     *
+     * @param _m11 Factor of x in the new x coordinate.
+     * @param _m12 Factor of y in the new x coordinate.
+     * @param _m13 Translation of the new x coordinate.
+     * @param _m21 Factor of x in the new y coordinate.
+     * @param _m22 Factor of y in the new y coordinate.
+     * @param _m23 Translation of the new y coordinate.
+     */
+    public Transform2D(double _m11, double _m12, double _m13, double _m21, double _m22, double _m23) {
+        mM11 = _m11;
+        mM12 = _m12;
+        mM13 = _m13;
+        mM21 = _m21;
+        mM22 = _m22;
+        mM23 = _m23;
+    }
+
+    /**
+     * Constructs a new Transform2D out of the first two rows of the given Matrix.
+     *
+     * @param _m Matrix to convert.
+     */
+    public Transform2D(Matrix _m) {
+        this(_m.getMatrixValue(0, 0), _m.getMatrixValue(0, 1), _m.getMatrixValue(0, 2),
+                _m.getMatrixValue(1, 0), _m.getMatrixValue(1, 1), _m.getMatrixValue(1, 2));
+    }
+
+    /**
+     * Constructs a copy of the given Transform2D.
+     *
+     * @param _t Transformation to copy.
+     */
+    public Transform2D(Transform2D _t) {
+        this(_t.mM11, _t.mM12, _t.mM13, _t.mM21, _t.mM22, _t.mM23);
+    }
+
+    /**
+     * Provides the inverse of this transformation, which converts window coordinates back into map coordinates.
+     * It is calculated on the first call after a change and cached.
+     *
+     * @return The inverse, which must not be modified.
+     */
+    public Transform2D getInverse() {
+        if (mInverse == null) {
+            double det = mM11 * mM22 - mM12 * mM21;
+            mInverse = new Transform2D(mM22 / det, -mM12 / det, (mM12 * mM23 - mM22 * mM13) / det,
+                    -mM21 / det, mM11 / det, (mM21 * mM13 - mM11 * mM23) / det);
+        }
+        return mInverse;
+    }
+
+    /**
+     * Moves the result of this transformation by the given distance, e.g. to pan the view.
+     *
+     * @param _dx Distance in x direction.
+     * @param _dy Distance in y direction.
+     */
+    public void translate(double _dx, double _dy) {
+        mM13 += _dx;
+        mM23 += _dy;
+        mInverse = null;
+    }
+
+    /**
+     * Scales the result of this transformation around the given point, e.g. to zoom the view at a window point.
+     *
+     * @param _factor Scale factor.
+     * @param _x      X coordinate of the point that stays in place.
+     * @param _y      Y coordinate of the point that stays in place.
+     */
+    public void scale(double _factor, double _x, double _y) {
+        mM11 *= _factor;
+        mM12 *= _factor;
+        mM13 = _factor * (mM13 - _x) + _x;
+        mM21 *= _factor;
+        mM22 *= _factor;
+        mM23 = _factor * (mM23 - _y) + _y;
+        mInverse = null;
+    }
+
+    /**
+     * Rotates the input of this transformation around the given point, like multiplying it with
+     * Matrix.translate(_x, _y) * Matrix.rotate(_alpha) * Matrix.translate(-_x, -_y) from the right.
+     *
+     * @param _alpha Angle in rad.
+     * @param _x     X coordinate of the centre of the rotation, in the coordinates before this transformation.
+     * @param _y     Y coordinate of the centre of the rotation, in the coordinates before this transformation.
+     */
+    public void rotate(double _alpha, double _x, double _y) {
+        double cos = Math.cos(_alpha);
+        double sin = Math.sin(_alpha);
+        /* The rotation maps the centre c to c, so its translation is c - R * c. */
+        double tx = _x - (cos * _x - sin * _y);
+        double ty = _y - (sin * _x + cos * _y);
+        double m11 = mM11 * cos + mM12 * sin;
+        double m12 = -mM11 * sin + mM12 * cos;
+        double m21 = mM21 * cos + mM22 * sin;
+        double m22 = -mM21 * sin + mM22 * cos;
+        mM13 += mM11 * tx + mM12 * ty;
+        mM23 += mM21 * tx + mM22 * ty;
+        mM11 = m11;
+        mM12 = m12;
+        mM21 = m21;
+        mM22 = m22;
+        mInverse = null;
+    }
+
+    /**
+     * Applies the given transformation after this one, like multiplying it with this from the left.
+     *
+     * @param _after Transformation applied to the results of this one.
+     */
+    public void preConcatenate(Transform2D _after) {
+        double m11 = _after.mM11 * mM11 + _after.mM12 * mM21;
+        double m12 = _after.mM11 * mM12 + _after.mM12 * mM22;
+        double m13 = _after.mM11 * mM13 + _after.mM12 * mM23 + _after.mM13;
+        double m21 = _after.mM21 * mM11 + _after.mM22 * mM21;
+        double m22 = _after.mM21 * mM12 + _after.mM22 * mM22;
+        double m23 = _after.mM21 * mM13 + _after.mM22 * mM23 + _after.mM23;
+        mM11 = m11;
+        mM12 = m12;
+        mM13 = m13;
+        mM21 = m21;
+        mM22 = m22;
+        mM23 = m23;
+        mInverse = null;
+    }
+
+    /**
+     * Converts the x coordinate of the given point.
+     *
+     * @param _x X coordinate of the point.
+     * @param _y Y coordinate of the point.
+     * @return The new x coordinate.
+     */
+    public double getX(double _x, double _y) {
+        return mM11 * _x + mM12 * _y + mM13;
+    }
+
+    /**
+     * Converts the y coordinate of the given point.
+     *
+     * @param _x X coordinate of the point.
+     * @param _y Y coordinate of the point.
+     * @return The new y coordinate.
+     */
+    public double getY(double _x, double _y) {
+        return mM21 * _x + mM22 * _y + mM23;
+    }
+
+    /**
+     * Converts the given point, like Matrix.multiply(Point).
+     *
+     * @param _pt Point to convert.
+     * @return A new Point containing the truncated result.
+     */
+    public Point transform(Point _pt) {
+        return new Point((int) getX(_pt.x, _pt.y), (int) getY(_pt.x, _pt.y));
+    }
+
+    /**
+     * Converts the given box and calculates the bounding box of the result, which also covers rotations.
+     *
+     * @param _minX Left border of the box.
+     * @param _minY Upper border of the box.
+     * @param _maxX Right border of the box.
+     * @param _maxY Lower border of the box.
+     * @param _out  Array receiving the converted box as minimal x, minimal y, maximal x and maximal y.
+     */
+    public void transformBox(int _minX, int _minY, int _maxX, int _maxY, double[] _out) {
+        /* The extremes of an affine image of a box are the images of its corners, coordinate by coordinate. */
+        double x0 = mM11 * _minX;
+        double x1 = mM11 * _maxX;
+        double x2 = mM12 * _minY;
+        double x3 = mM12 * _maxY;
+        double y0 = mM21 * _minX;
+        double y1 = mM21 * _maxX;
+        double y2 = mM22 * _minY;
+        double y3 = mM22 * _maxY;
+        _out[0] = Math.min(x0, x1) + Math.min(x2, x3) + mM13;
+        _out[1] = Math.min(y0, y1) + Math.min(y2, y3) + mM23;
+        _out[2] = Math.max(x0, x1) + Math.max(x2, x3) + mM13;
+        _out[3] = Math.max(y0, y1) + Math.max(y2, y3) + mM23;
+    }
+
+    /**
+     * Converts the given vector without the translation, like Matrix.multiply(Point2D.Double).
+     *
+     * @param _v Vector to convert.
+     * @return A new Point2D.Double containing the result.
+     */
+    public Point2D.Double transformVector(Point2D.Double _v) {
+        return new Point2D.Double(mM11 * _v.x + mM12 * _v.y, mM21 * _v.x + mM22 * _v.y);
+    }
+
+    /**
+     * Converts the given integer coordinates and truncates the results, like Matrix.multiply(Polygon).
+     * The output arrays may be the input arrays. This is the batch kernel for whole coordinate buffers:
+     * a branch-free counted loop over flat arrays with the coefficients in locals, which the JIT compiler
+     * unrolls and may vectorise.
+     *
+     * @param _x    X coordinates to convert.
+     * @param _y    Y coordinates to convert.
+     * @param _n    Number of points to convert.
+     * @param _outX Array receiving the new x coordinates.
+     * @param _outY Array receiving the new y coordinates.
+     */
+    public void transform(int[] _x, int[] _y, int _n, int[] _outX, int[] _outY) {
+        double m11 = mM11;
+        double m12 = mM12;
+        double m13 = mM13;
+        double m21 = mM21;
+        double m22 = mM22;
+        double m23 = mM23;
+        for (int i = 0; i < _n; i++) {
+            double x = _x[i];
+            double y = _y[i];
+            _outX[i] = (int) (m11 * x + m12 * y + m13);
+            _outY[i] = (int) (m21 * x + m22 * y + m23);
+        }
+    }
+
+    /**
+     * Converts the given interleaved x/y coordinates. The output array may be the input array.
+     *
+     * @param _src    Interleaved coordinates to convert.
+     * @param _srcOff Index of the x coordinate of the first point in _src.
+     * @param _dst    Array receiving the new interleaved coordinates.
+     * @param _dstOff Index of the x coordinate of the first point in _dst.
+     * @param _n      Number of points to convert.
+     */
+    public void transform(double[] _src, int _srcOff, double[] _dst, int _dstOff, int _n) {
+        double m11 = mM11;
+        double m12 = mM12;
+        double m13 = mM13;
+        double m21 = mM21;
+        double m22 = mM22;
+        double m23 = mM23;
+        for (int i = 0; i < _n; i++) {
+            double x = _src[_srcOff + 2 * i];
+            double y = _src[_srcOff + 2 * i + 1];
+            _dst[_dstOff + 2 * i] = m11 * x + m12 * y + m13;
+            _dst[_dstOff + 2 * i + 1] = m21 * x + m22 * y + m23;
+        }
+    }
+
+    /**
+     * Converts the given polygon, like Matrix.multiply(Polygon).
+     *
+     * @param _poly Polygon to convert.
+     * @return A new Polygon containing the truncated results.
+     */
+    public Polygon transform(Polygon _poly) {
+        int[] x = new int[_poly.npoints];
+        int[] y = new int[_poly.npoints];
+        transform(_poly.xpoints, _poly.ypoints, _poly.npoints, x, y);
+        return new Polygon(x, y, _poly.npoints);
+    }
+
+    /**
+     * Provides the translation of the new x coordinate.
+     *
+     * @return The translation in x direction.
+     */
+    public double getTranslateX() {
+        return mM13;
+    }
+
+    /**
+     * Provides the translation of the new y coordinate.
+     *
+     * @return The translation in y direction.
+     */
+    public double getTranslateY() {
+        return mM23;
+    }
+
+    /**
+     * Provides this transformation without its translation, i.e. only its scale and rotation.
+     *
+     * @return A new Transform2D.
+     */
+    public Transform2D getLinearPart() {
+        return new Transform2D(mM11, mM12, 0, mM21, mM22, 0);
+    }
+
+    /**
+     * Checks whether the given transformation scales and rotates like this one, so they only differ by a pan.
+     * Factors closer than a billionth of the scale are considered equal, so zooming in and out again matches.
+     *
+     * @param _t Transformation to compare.
+     * @return True if both have the same scale and rotation.
+     */
+    public boolean hasSameLinearPart(Transform2D _t) {
+        double epsilon = getScale() * 1e-9;
+        return Math.abs(mM11 - _t.mM11) <= epsilon && Math.abs(mM12 - _t.mM12) <= epsilon
+                && Math.abs(mM21 - _t.mM21) <= epsilon && Math.abs(mM22 - _t.mM22) <= epsilon;
+    }
+
+    /**
+     * Provides the length one map unit is scaled to, assuming the same scale in both directions.
+     *
+     * @return The scale factor.
+     */
+    public double getScale() {
+        return Math.hypot(mM11, mM21);
+    }
+
+    /**
+     * Provides this transformation as AffineTransform, e.g. for transforming shapes.
+     *
+     * @return A new AffineTransform.
+     */
+    public AffineTransform getAffineTransform() {
+        return new AffineTransform(mM11, mM21, mM12, mM22, mM13, mM23);
+    }
+
+    @Override
+    public String toString() {
+        return mM11 + ", " + mM12 + ", " + mM13 + "\n" + mM21 + ", " + mM22 + ", " + mM23;
+    }
+}
@@ -0,0 +1,74 @@
+package at.fh.hgb.mc.gis.server;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class allows a running extraction to be cancelled from another thread.
+ * Statements registered while they are executed are cancelled on the database server (Statement.cancel()),
+ * extractions check isCancelled() between batches and stop delivering data.
+ */
+public class Cancellation {
+    /**
+     * Flag indicating whether cancel() has been called.
+     */
+    private volatile boolean mCancelled = false;
+    /**
+     * Statements that are currently executed on behalf of this cancellation.
+     */
+    private final Set<Statement> mStatements = new HashSet<>();
+
+    /**
+     * Cancels the extraction. All registered statements are cancelled on the database server,
+     * errors are ignored because the statements may have finished in the meantime.
+     */
+    public void cancel() {
+        List<Statement> running;
+        synchronized (this) {
+            if (mCancelled) return;
+            mCancelled = true;
+            running = new ArrayList<>(mStatements);
+        }
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException _e) {
+                // the statement has finished already
+            }
+        }
+    }
+
+    /**
+     * Get method of the mCancelled variable.
+     *
+     * @return True if cancel() has been called.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Registers a statement before it is executed, so it can be cancelled.
+     *
+     * @param _statement Statement that is about to be executed.
+     * @return False if the extraction has been cancelled already and the statement must not be executed.
+     */
+    public synchronized boolean register(Statement _statement) {
+        if (mCancelled) return false;
+        mStatements.add(_statement);
+        return true;
+    }
+
+    /**
+     * Removes a statement registered with register() after it has been executed.
+     *
+     * @param _statement Statement that has been executed.
+     */
+    public synchronized void unregister(Statement _statement) {
+        mStatements.remove(_statement);
+    }
+}
@@ -0,0 +1,250 @@
+package at.fh.hgb.mc.gis.server;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGStatement;
+import org.postgresql.util.PGobject;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * This class provides a pool of reusable connections to one PostGIS database.
+ * There is exactly one pool per database url, shared by all IGISServer instances connecting to that database.
+ * The PostGIS types are registered once, when a connection is established, so borrowed connections
+ * can be used right away. Prepared statements are cached per connection and survive borrowing and releasing.
+ */
+public class ConnectionPool {
+    /**
+     * Maximal number of idle connections kept open per database.
+     */
+    private static final int MAX_IDLE = 8;
+    /**
+     * Time in milliseconds a connection may be idle before it is validated again when it is borrowed.
+     */
+    private static final long VALIDATION_INTERVAL = 30000;
+    /**
+     * All pools, mapped by their database url.
+     */
+    private static final Map<String, ConnectionPool> sPools = new HashMap<>();
+
+    /**
+     * Url of the database.
+     */
+    private final String mUrl;
+    /**
+     * User name used for connecting to the database.
+     */
+    private final String mUser;
+    /**
+     * Password used for connecting to the database.
+     */
+    private final String mPassword;
+    /**
+     * Idle connections, the most recently released one first.
+     */
+    private final Deque<IdleConnection> mIdle = new ArrayDeque<>();
+    /**
+     * Cached prepared statements, mapped by their connection and their sql.
+     */
+    private final Map<Connection, Map<String, PreparedStatement>> mStatements = new IdentityHashMap<>();
+    /**
+     * Flag indicating whether the pool has been closed by closeAll(). Released connections aren't kept anymore.
+     */
+    private boolean mClosed = false;
+
+    /**
+     * Provides the pool for the given database. The pool is created on first use.
+     *
+     * @param _url      JDBC url of the database.
+     * @param _user     User name used for connecting to the database.
+     * @param _password Password used for connecting to the database.
+     * @return The pool of the database.
+     */
+    public static synchronized ConnectionPool getPool(String _url, String _user, String _password) {
+        ConnectionPool pool = sPools.get(_url);
+        if (pool == null) {
+            pool = new ConnectionPool(_url, _user, _password);
+            sPools.put(_url, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Closes all idle connections of all pools. Borrowed connections are closed when they are released,
+     * the pools don't keep any connections afterwards.
+     */
+    public static synchronized void closeAll() {
+        for (ConnectionPool pool : sPools.values()) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Constructs a new, empty ConnectionPool.
+     *
+     * @param _url      JDBC url of the database.
+     * @param _user     User name used for connecting to the database.
+     * @param _password Password used for connecting to the database.
+     */
+    private ConnectionPool(String _url, String _user, String _password) {
+        mUrl = _url;
+        mUser = _user;
+        mPassword = _password;
+    }
+
+    /**
+     * Borrows a connection from the pool. A new connection is established if there is no idle one.
+     * The connection has to be given back with release().
+     *
+     * @return A connection in autocommit mode with the PostGIS types registered.
+     * @throws Exception If a new connection can't be established.
+     */
+    public Connection borrow() throws Exception {
+        while (true) {
+            IdleConnection idle;
+            synchronized (this) {
+                idle = mIdle.pollFirst();
+            }
+            if (idle == null) break;
+
+            Connection c = idle.mConnection;
+            boolean valid;
+            try {
+                valid = !c.isClosed()
+                        && (System.currentTimeMillis() - idle.mSince < VALIDATION_INTERVAL || c.isValid(2));
+            } catch (SQLException _e) {
+                valid = false;
+            }
+            if (valid) return c;
+            discard(c);
+        }
+        return connect();
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Open transactions are rolled back.
+     * The connection is closed instead if the pool is full or has been closed.
+     *
+     * @param _connection Connection to give back. Null is ignored.
+     */
+    public void release(Connection _connection) {
+        if (_connection == null) return;
+        try {
+            if (_connection.isClosed()) return;
+            if (!_connection.getAutoCommit()) {
+                _connection.rollback();
+                _connection.setAutoCommit(true);
+            }
+        } catch (SQLException _e) {
+            discard(_connection);
+            return;
+        }
+        synchronized (this) {
+            if (!mClosed && mIdle.size() < MAX_IDLE) {
+                mIdle.addFirst(new IdleConnection(_connection));
+                return;
+            }
+        }
+        discard(_connection);
+    }
+
+    /**
+     * Provides a prepared statement for the given sql on the given borrowed connection.
+     * The statement is prepared on the server at its first execution and cached, so later executions
+     * skip parsing and planning. The statement must not be closed by the caller.
+     *
+     * @param _connection Connection borrowed from this pool.
+     * @param _sql        Sql of the statement.
+     * @return The cached or newly prepared statement.
+     * @throws SQLException If the statement can't be prepared.
+     */
+    public PreparedStatement prepare(Connection _connection, String _sql) throws SQLException {
+        Map<String, PreparedStatement> statements;
+        synchronized (this) {
+            statements = mStatements.computeIfAbsent(_connection, _c -> new HashMap<>());
+        }
+        /* A borrowed connection is only used by one thread, so its map needs no locking. */
+        PreparedStatement statement = statements.get(_sql);
+        if (statement == null) {
+            statement = _connection.prepareStatement(_sql);
+            statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+            statements.put(_sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Closes all idle connections of this pool and makes release() close the borrowed ones.
+     */
+    private synchronized void close() {
+        mClosed = true;
+        for (IdleConnection idle : mIdle) {
+            discard(idle.mConnection);
+        }
+        mIdle.clear();
+    }
+
+    /**
+     * Establishes a new connection to the database and registers the PostGIS types.
+     *
+     * @return The new connection.
+     * @throws Exception If the driver can't be loaded or the connection can't be established.
+     */
+    private Connection connect() throws Exception {
+        /* Load the JDBC driver and establish a connection. */
+        Class.forName("org.postgresql.Driver");
+        Connection connection = DriverManager.getConnection(mUrl, mUser, mPassword);
+        /* Add the geometry types to the connection. */
+        PGConnection c = (PGConnection) connection;
+        // alternativ org.postgis.PGgeometry.class
+        c.addDataType("geometry",
+                (Class<? extends PGobject>) Class.forName("net.postgis.jdbc.PGgeometry"));
+        // alterantiv org.postgis.PGbox2d.class
+        c.addDataType("box2d",
+                (Class<? extends PGobject>) Class.forName("net.postgis.jdbc.PGbox2d"));
+        return connection;
+    }
+
+    /**
+     * Removes the cached statements of the given connection and closes it. All errors are ignored.
+     *
+     * @param _connection Connection to close.
+     */
+    private void discard(Connection _connection) {
+        synchronized (this) {
+            mStatements.remove(_connection);
+        }
+        try {
+            _connection.close();
+        } catch (SQLException _e) {
+            // the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Storage class for an idle connection and the point in time it was released.
+     */
+    private static class IdleConnection {
+        /**
+         * The idle connection.
+         */
+        private final Connection mConnection;
+        /**
+         * Point in time (System.currentTimeMillis()) the connection was released.
+         */
+        private final long mSince;
+
+        /**
+         * Constructs a new IdleConnection released right now.
+         *
+         * @param _connection The idle connection.
+         */
+        private IdleConnection(Connection _connection) {
+            mConnection = _connection;
+            mSince = System.currentTimeMillis();
+        }
+    }
+}
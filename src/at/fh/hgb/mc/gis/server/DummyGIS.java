@@ -77,6 +77,78 @@ public class DummyGIS implements IGISServer {
         }
         return null;
     }
+
+    /**
+     * The Geo-Server doesn't provide cursors, so the data is extracted completely and then
+     * handed to the consumer in batches of _fetchSize objects.
+     */
+    @Override
+    public void extractData(String _statement, int _fetchSize, IExtractionConsumer _consumer) {
+        java.util.List<GeoObject> data = extractData(_statement, false);
+        if (data == null) return;
+        deliver(data, _fetchSize, _consumer);
+    }
+
+    /**
+     * Hands the given objects to the consumer in batches of _fetchSize objects.
+     *
+     * @param _data      Extracted objects.
+     * @param _fetchSize Size of the batches, 0 delivers a single batch.
+     * @param _consumer  Consumer receiving the batches.
+     */
+    private void deliver(java.util.List<GeoObject> _data, int _fetchSize, IExtractionConsumer _consumer) {
+        if (_fetchSize <= 0) _fetchSize = _data.size();
+        FeatureStore.Builder batch = new FeatureStore.Builder();
+        for (GeoObject obj : _data) {
+            batch.add(obj);
+            if (batch.size() >= _fetchSize) {
+                _consumer.consume(batch.build());
+                batch = new FeatureStore.Builder();
+            }
+        }
+        if (batch.size() > 0) _consumer.consume(batch.build());
+    }
+
+    @Override
+    public String[] getLayers() {
+        return new String[]{"data"};
+    }
+
+    /**
+     * The Geo-Server only provides a single connection, so the layer is extracted over the connection
+     * established by init(). Envelopes and generalisation are not supported, the whole layer is extracted
+     * in full detail. A cancellation only stops the delivery of the batches.
+     */
+    @Override
+    public boolean extractLayer(String _layer, Rectangle _envelope, double _tolerance, int _fetchSize,
+                                IExtractionConsumer _consumer, Cancellation _cancellation) {
+        java.util.List<GeoObject> data = extractData("select * from " + _layer
+                + " where type in (233, 931, 932, 933, 934, 1101)", false);
+        if (data == null) return false;
+        deliver(data, _fetchSize, _batch -> {
+            if (_cancellation == null || !_cancellation.isCancelled()) _consumer.consume(_batch);
+        });
+        return _cancellation == null || !_cancellation.isCancelled();
+    }
+
+    @Override
+    public long getLayerVersion(String _layer) {
+        return -1;
+    }
+
+    /**
+     * The attributes are always extracted along with the geometry, there is nothing to fetch.
+     */
+    @Override
+    public String extractAttributes(String _layer, String _id, int _type) {
+        return null;
+    }
+
+    @Override
+    public Rectangle getExtent() {
+        return null;
+    }
+
     @Override
     public ADrawingContext getDrawingContext() {
         return new DummyDrawingContext();
@@ -0,0 +1,18 @@
+package at.fh.hgb.mc.gis.server;
+
+import at.fh.hgb.mc.gis.feature.FeatureStore;
+
+/**
+ * A class implements the IExtractionConsumer interface when it wants to receive the features of a
+ * streaming extraction batch by batch, while the query is still running.
+ *
+ * @see IGISServer#extractData(String, int, IExtractionConsumer)
+ */
+public interface IExtractionConsumer {
+    /**
+     * This method is called whenever a batch of features has been decoded.
+     *
+     * @param _batch Decoded features.
+     */
+    void consume(FeatureStore _batch);
+}
@@ -3,6 +3,7 @@ package at.fh.hgb.mc.gis.server;
 import at.fh.hgb.mc.gis.feature.ADrawingContext;
 import at.fh.hgb.mc.gis.feature.GeoObject;
 
+import java.awt.*;
 import java.util.List;
 
 /**
@@ -26,6 +27,72 @@ public interface IGISServer {
      */
     List<GeoObject> extractData(String _statement, boolean _keepConnectionOpen);
 
+    /**
+     * This method streams the data, specified by the given statement, from the database server.
+     * The rows are fetched through a server-side cursor, _fetchSize rows at a time, and handed to the
+     * consumer as soon as they are decoded. The connection is kept open.
+     *
+     * @param _statement SQL Statement in String format.
+     * @param _fetchSize Number of rows fetched per round trip, which is also the size of the delivered batches.
+     * @param _consumer  Consumer receiving the decoded features batch by batch.
+     */
+    void extractData(String _statement, int _fetchSize, IExtractionConsumer _consumer);
+
+    /**
+     * This method provides the layers (tables) of the database server in the order they should be drawn.
+     *
+     * @return Names of the layers, in drawing order.
+     */
+    String[] getLayers();
+
+    /**
+     * This method streams the objects of the given layer that intersect the given envelope from the database server.
+     * Only id, type and geometry are extracted, the attributes are left null and fetched on demand with
+     * extractAttributes(). Each call uses its own connection, so different layers can be extracted concurrently.
+     *
+     * @param _layer     Name of the layer as returned by getLayers().
+     * @param _envelope  Envelope in client coordinates restricting the extracted objects, null for the whole layer.
+     * @param _tolerance Generalisation tolerance in client coordinates. The geometries are snapped to a grid of this
+     *                   size by the database server. 0 extracts the geometries in full detail.
+     * @param _fetchSize Number of rows fetched per round trip, which is also the size of the delivered batches.
+     * @param _consumer  Consumer receiving the decoded features batch by batch.
+     * @param _cancellation Cancellation stopping the extraction when it is cancelled from another thread.
+     *                   The running query is cancelled on the database server. May be null.
+     * @return True if the layer has been extracted completely, false if the extraction failed or has been
+     * cancelled. In that case the consumer may have received a part of the layer.
+     */
+    boolean extractLayer(String _layer, Rectangle _envelope, double _tolerance, int _fetchSize,
+                      IExtractionConsumer _consumer, Cancellation _cancellation);
+
+    /**
+     * This method provides a version of the given layer, derived from the statistics of the database server.
+     * The version changes whenever objects of the layer are inserted, updated or deleted.
+     * Each call uses its own connection, so it can be called concurrently.
+     *
+     * @param _layer Name of the layer as returned by getLayers().
+     * @return The version of the layer or -1 if it is unknown.
+     */
+    long getLayerVersion(String _layer);
+
+    /**
+     * This method fetches the attributes of a single object from the database server.
+     * Each call uses its own connection.
+     *
+     * @param _layer Layer of the object as returned by getLayers(), null to search all layers.
+     * @param _id    Id of the object.
+     * @param _type  Type of the object.
+     * @return The attributes or null if the object can't be found.
+     * @throws Exception If the attributes can't be fetched, e.g. because the connection failed.
+     */
+    String extractAttributes(String _layer, String _id, int _type) throws Exception;
+
+    /**
+     * This method provides the extent of all layers, as estimated by the database server.
+     *
+     * @return The extent in client coordinates or null if it is unknown.
+     */
+    Rectangle getExtent();
+
     /**
      * This method provides a ADrawingContext for the different GeoObject
      * types that can be fetched from the database server.
@@ -0,0 +1,434 @@
+package at.fh.hgb.mc.gis.server;
+
+import at.fh.hgb.mc.gis.feature.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class stores the decoded features of a layer on the local disk, so they can be loaded again without
+ * querying and decoding them a second time. The files of a server are kept in the folder cache/, named after
+ * the layer and a generation number: every write creates a new generation, and only the newest one is read.
+ * <p>
+ * A file consists of a header followed by the columns of a FeatureStore as flat sections of packed integers:
+ * the types of all features, the offsets of their parts, the offsets of the rings of every part,
+ * the offsets of the vertices of every ring, the byte offsets of every ring, the offsets of the id and
+ * attribute strings, the geometry kinds, the compressed coordinates of all vertices (exactly as held by the
+ * FeatureStore) and finally the strings themselves.
+ * Files are read through a memory mapping. The coordinates, which make up most of a file, are used by the
+ * FeatureStore directly from a read-only view of the mapping, so the operating system pages them in on demand and
+ * they don't occupy the Java heap. The other columns are copied out of the mapping.
+ * <p>
+ * Every file records the version of its layer (see IGISServer.getLayerVersion()) and the generalisation tolerance
+ * it was loaded with. A file is ignored if the layer has changed since or if it is less detailed than requested.
+ * invalidate() deletes the files explicitly.
+ * <p>
+ * A mapped file stays mapped until the FeatureStore read from it has been garbage collected, and on Windows such
+ * a file can neither be deleted nor replaced. So a write never replaces a file, it adds a new generation, and the
+ * older generations are deleted when the layer is read or written the next time. If a file can't be deleted, this
+ * is reported and retried later. If invalidate() can't delete the files of a layer, it adds an empty file as the
+ * newest generation, so the old data is never read again.
+ */
+public class LayerCache {
+    /**
+     * Magic number at the start of every cache file ("GISC").
+     */
+    private static final int MAGIC = 0x47495343;
+    /**
+     * Version of the file format. Files of other versions are ignored.
+     */
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 44;
+    /**
+     * Extension of the cache files. Files of earlier versions are named after the layer only and count as
+     * generation 0.
+     */
+    private static final String SUFFIX = ".bin";
+    /**
+     * Folder containing the cache files of the server.
+     */
+    private final File mDirectory;
+
+    /**
+     * Constructs a new LayerCache for the given server.
+     *
+     * @param _server Name of the server, used as folder name.
+     */
+    public LayerCache(String _server) {
+        mDirectory = new File("cache", _server);
+    }
+
+    /**
+     * Reads the cached features of the given layer and hands them to the consumer as a single batch.
+     * The coordinates stay in the mapping, the other columns are copied out of it in bulk.
+     *
+     * @param _layer     Name of the layer.
+     * @param _version   Current version of the layer. Negative versions never match.
+     * @param _tolerance Generalisation tolerance the features are needed in. Files loaded with a larger tolerance
+     *                   are ignored.
+     * @param _consumer  Consumer receiving the cached features.
+     * @return The tolerance the cached features were loaded with or -1 if there is no matching file.
+     */
+    public double read(String _layer, long _version, double _tolerance, IExtractionConsumer _consumer) {
+        List<File> files = getFiles(_layer);
+        if (files.isEmpty()) return -1;
+        File file = files.get(files.size() - 1);
+        deleteOlder(_layer, file);
+        if (_version < 0) return -1;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            /* an empty file marks a layer invalidate() couldn't delete */
+            if (channel.size() < HEADER_SIZE) return -1;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) return -1;
+            double tolerance = buffer.getDouble(16);
+            if (buffer.getLong(8) != _version || tolerance > _tolerance) return -1;
+
+            int features = buffer.getInt(24);
+            int parts = buffer.getInt(28);
+            int rings = buffer.getInt(32);
+            buffer.position(HEADER_SIZE);
+            int[] types = readInts(buffer, features);
+            int[] partOffsets = readInts(buffer, features + 1);
+            int[] ringOffsets = readInts(buffer, parts + 1);
+            int[] vertexOffsets = readInts(buffer, rings + 1);
+            int[] ringBytes = readInts(buffer, rings + 1);
+            int[] stringOffsets = readInts(buffer, 2 * features);
+            byte[] kinds = new byte[features];
+            buffer.get(kinds);
+            ByteBuffer coords = buffer.duplicate().limit(buffer.position() + ringBytes[rings]).slice()
+                    .asReadOnlyBuffer();
+            buffer.position(buffer.position() + ringBytes[rings]);
+            int blobPos = buffer.position();
+
+            String[] ids = new String[features];
+            String[] attrs = new String[features];
+            for (int i = 0; i < features; i++) {
+                ids[i] = readString(buffer, blobPos + stringOffsets[2 * i]);
+                attrs[i] = readString(buffer, blobPos + stringOffsets[2 * i + 1]);
+            }
+            _consumer.consume(new FeatureStore(types, kinds, ids, attrs, partOffsets, ringOffsets, vertexOffsets,
+                    ringBytes, coords));
+            return tolerance;
+        } catch (IOException | RuntimeException _e) {
+            /* a damaged file is treated like a missing one */
+            System.out.println("Ignoring cache file " + file + ": " + _e);
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the given features of a layer to a new generation of its cache file and deletes the older ones if
+     * possible. The file is written under a temporary name first, so readers never see a partial file.
+     *
+     * @param _layer     Name of the layer.
+     * @param _version   Current version of the layer. Nothing is written for negative versions.
+     * @param _tolerance Generalisation tolerance the features were loaded with.
+     * @param _data      All features of the layer.
+     */
+    public void write(String _layer, long _version, double _tolerance, FeatureStore _data) {
+        if (_version < 0) return;
+
+        int features = _data.size();
+        int[] partOffsets = _data.getPartOffsets();
+        int[] ringOffsets = _data.getRingOffsets();
+        int[] vertexOffsets = _data.getVertexOffsets();
+        int parts = partOffsets[features];
+        int rings = ringOffsets[parts];
+        int vertices = vertexOffsets[rings];
+        List<byte[]> strings = new ArrayList<>(2 * features);
+        int stringBytes = 0;
+        for (int i = 0; i < features; i++) {
+            byte[] id = encode(_data.getId(i));
+            byte[] attr = encode(_data.getAttr(i));
+            strings.add(id);
+            strings.add(attr);
+            stringBytes += 8 + (id == null ? 0 : id.length) + (attr == null ? 0 : attr.length);
+        }
+
+        File temp;
+        try {
+            mDirectory.mkdirs();
+            temp = Files.createTempFile(mDirectory.toPath(), _layer + ".", ".tmp").toFile();
+        } catch (IOException _e) {
+            _e.printStackTrace();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(_version);
+            out.writeDouble(_tolerance);
+            out.writeInt(features);
+            out.writeInt(parts);
+            out.writeInt(rings);
+            out.writeInt(vertices);
+            out.writeInt(stringBytes);
+
+            writeInts(out, _data.getTypes(), features);
+            writeInts(out, partOffsets, features + 1);
+            writeInts(out, ringOffsets, parts + 1);
+            writeInts(out, vertexOffsets, rings + 1);
+            int[] ringBytes = _data.getRingBytes();
+            writeInts(out, ringBytes, rings + 1);
+            /* string offsets relative to the start of the string section */
+            int offset = 0;
+            for (byte[] s : strings) {
+                out.writeInt(offset);
+                offset += 4 + (s == null ? 0 : s.length);
+            }
+            out.write(_data.getKinds(), 0, features);
+            byte[] coords = new byte[ringBytes[rings]];
+            _data.getCoords().get(coords);
+            out.write(coords);
+            for (byte[] s : strings) {
+                if (s == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(s.length);
+                    out.write(s);
+                }
+            }
+        } catch (IOException _e) {
+            _e.printStackTrace();
+            delete(temp);
+            return;
+        }
+        /* the new generation doesn't exist yet, so the move doesn't have to replace a file that may be mapped */
+        File file = getFile(_layer, getNewestGeneration(_layer) + 1);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException _e) {
+            _e.printStackTrace();
+            delete(temp);
+            return;
+        }
+        deleteOlder(_layer, file);
+    }
+
+    /**
+     * Deletes the cache files of the given layer. If a file can't be deleted, an empty file is added as the
+     * newest generation, so the layer is loaded from the server again.
+     *
+     * @param _layer Name of the layer.
+     * @return True if all files have been deleted.
+     */
+    public boolean invalidate(String _layer) {
+        boolean deleted = true;
+        for (File file : getFiles(_layer)) {
+            deleted &= delete(file);
+        }
+        if (!deleted) {
+            addEmptyGeneration(_layer);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the cache files of all layers of the server, see invalidate(String).
+     *
+     * @return True if all files have been deleted.
+     */
+    public boolean invalidate() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return true;
+        Set<String> remaining = new HashSet<>();
+        for (File file : files) {
+            if (!delete(file) && file.getName().endsWith(SUFFIX)) {
+                remaining.add(getLayer(file.getName()));
+            }
+        }
+        for (String layer : remaining) {
+            addEmptyGeneration(layer);
+        }
+        return remaining.isEmpty();
+    }
+
+    /**
+     * Provides the cache file of the given layer and generation.
+     *
+     * @param _layer      Name of the layer.
+     * @param _generation Generation of the file.
+     * @return The file, which doesn't have to exist.
+     */
+    private File getFile(String _layer, long _generation) {
+        return new File(mDirectory, _layer + "." + _generation + SUFFIX);
+    }
+
+    /**
+     * Provides the cache files of the given layer.
+     *
+     * @param _layer Name of the layer.
+     * @return The existing files, ordered by their generation, oldest first.
+     */
+    private List<File> getFiles(String _layer) {
+        List<File> result = new ArrayList<>();
+        File[] files = mDirectory.listFiles();
+        if (files == null) return result;
+        for (File file : files) {
+            if (getGeneration(file.getName(), _layer) >= 0) {
+                result.add(file);
+            }
+        }
+        result.sort((_a, _b) -> Long.compare(getGeneration(_a.getName(), _layer),
+                getGeneration(_b.getName(), _layer)));
+        return result;
+    }
+
+    /**
+     * Provides the newest generation of the cache files of the given layer.
+     *
+     * @param _layer Name of the layer.
+     * @return The generation or -1 if there is no file.
+     */
+    private long getNewestGeneration(String _layer) {
+        List<File> files = getFiles(_layer);
+        return files.isEmpty() ? -1 : getGeneration(files.get(files.size() - 1).getName(), _layer);
+    }
+
+    /**
+     * Extracts the generation from the name of a cache file.
+     *
+     * @param _name  Name of the file.
+     * @param _layer Name of the layer.
+     * @return The generation or -1 if the file isn't a cache file of the layer.
+     */
+    private static long getGeneration(String _name, String _layer) {
+        if (_name.equals(_layer + SUFFIX)) return 0;
+        if (!_name.startsWith(_layer + ".") || !_name.endsWith(SUFFIX)
+                || _name.length() <= _layer.length() + 1 + SUFFIX.length()) return -1;
+        String generation = _name.substring(_layer.length() + 1, _name.length() - SUFFIX.length());
+        for (int i = 0; i < generation.length(); i++) {
+            if (!Character.isDigit(generation.charAt(i))) return -1;
+        }
+        try {
+            return Long.parseLong(generation);
+        } catch (NumberFormatException _e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Extracts the name of the layer from the name of a cache file.
+     *
+     * @param _name Name of the file, which has to end with SUFFIX.
+     * @return The name of the layer.
+     */
+    private static String getLayer(String _name) {
+        String layer = _name.substring(0, _name.length() - SUFFIX.length());
+        int dot = layer.lastIndexOf('.');
+        return dot >= 0 && getGeneration(_name, layer.substring(0, dot)) >= 0 ? layer.substring(0, dot) : layer;
+    }
+
+    /**
+     * Deletes the cache files of the given layer that are older than the given one.
+     *
+     * @param _layer Name of the layer.
+     * @param _keep  Newest file of the layer, which is kept.
+     */
+    private void deleteOlder(String _layer, File _keep) {
+        long generation = getGeneration(_keep.getName(), _layer);
+        for (File file : getFiles(_layer)) {
+            if (getGeneration(file.getName(), _layer) < generation) {
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Adds an empty file as the newest generation of the given layer, which read() treats as a missing file.
+     *
+     * @param _layer Name of the layer.
+     */
+    private void addEmptyGeneration(String _layer) {
+        File file = getFile(_layer, getNewestGeneration(_layer) + 1);
+        try {
+            if (!file.createNewFile()) {
+                System.out.println("Cache file " + file + " couldn't be created, layer " + _layer
+                        + " may be read from an outdated file");
+            }
+        } catch (IOException _e) {
+            _e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the given file and reports if it can't be deleted, e.g. because it is still mapped on Windows.
+     *
+     * @param _file File to delete.
+     * @return True if the file doesn't exist anymore.
+     */
+    private static boolean delete(File _file) {
+        if (_file.delete() || !_file.exists()) return true;
+        System.out.println("Cache file " + _file + " couldn't be deleted, it is deleted later");
+        return false;
+    }
+
+    /**
+     * Copies the given number of integers from the current position of the mapping and advances it.
+     *
+     * @param _buffer Mapped cache file.
+     * @param _count  Number of integers to copy.
+     * @return The integers.
+     */
+    private static int[] readInts(ByteBuffer _buffer, int _count) {
+        int[] result = new int[_count];
+        _buffer.asIntBuffer().get(result);
+        _buffer.position(_buffer.position() + 4 * _count);
+        return result;
+    }
+
+    /**
+     * Writes the first integers of the given column.
+     *
+     * @param _out    Stream of the cache file.
+     * @param _values Column to write.
+     * @param _count  Number of integers to write.
+     * @throws IOException If the file can't be written.
+     */
+    private static void writeInts(DataOutputStream _out, int[] _values, int _count) throws IOException {
+        for (int i = 0; i < _count; i++) {
+            _out.writeInt(_values[i]);
+        }
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @param _buffer Mapped cache file.
+     * @param _pos    Position of the length prefix.
+     * @return The string or null if it was stored as null.
+     */
+    private static String readString(ByteBuffer _buffer, int _pos) {
+        int length = _buffer.getInt(_pos);
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = _buffer.duplicate();
+        view.position(_pos + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the given string as UTF-8.
+     *
+     * @param _s String to encode, may be null.
+     * @return The encoded bytes or null.
+     */
+    private static byte[] encode(String _s) {
+        return _s == null ? null : _s.getBytes(StandardCharsets.UTF_8);
+    }
+}
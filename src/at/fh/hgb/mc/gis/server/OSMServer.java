@@ -7,16 +7,18 @@ import net.postgis.jdbc.geometry.LinearRing;
 
 import java.awt.*;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
  * This class implements the IGISServer interface and acts as an intermediary so other OSMServers only have to
- * initialize themselves.
+ * provide their database url and drawing context.
  */
 public abstract class OSMServer implements IGISServer {
     /**
@@ -27,130 +29,432 @@ public abstract class OSMServer implements IGISServer {
      * Connection to the database server.
      */
     protected Connection mConnection;
+    /**
+     * Factor every coordinate is multiplied with before it is converted to an integer.
+     */
+    protected double mCoordinateFactor = 1;
+    /**
+     * Flag indicating whether geometries are fetched as WKB (ST_AsBinary) and decoded directly,
+     * or fetched as PGgeometry and parsed via their WKT representation.
+     */
+    protected boolean mBinaryDecoding = true;
+    /**
+     * Flag indicating whether extractLayer() fetches the attributes along with the geometry.
+     * Off by default, the attributes are fetched by extractAttributes() when they are displayed.
+     */
+    protected boolean mExtractAttributes = false;
+
+    /**
+     * This method provides the JDBC url of the database this server connects to.
+     *
+     * @return JDBC url of the database.
+     */
+    protected abstract String getDatabaseUrl();
+
+    /**
+     * Borrows a connection from the pool of the database, unless this server already holds one.
+     */
+    @Override
+    public boolean init() {
+        if (mConnection != null) return true;
+        try {
+            mConnection = getPool().borrow();
+            return true;
+        } catch (Exception _e) {
+            _e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Provides the connection pool of the database returned by getDatabaseUrl().
+     *
+     * @return The connection pool.
+     */
+    protected ConnectionPool getPool() {
+        return ConnectionPool.getPool(getDatabaseUrl(), "geo", "geo");
+    }
+
+    /**
+     * Provides the standard OSM layers. Servers whose database lacks some of the tables override this method.
+     */
+    @Override
+    public String[] getLayers() {
+        return new String[]{"osm_highway", "osm_waterway", "osm_railway", "osm_leisure", "osm_natural", "osm_landuse",
+                "osm_place", "osm_building"};
+    }
+
+    /**
+     * Switches between the two decoding modes of extractData().
+     *
+     * @param _binary True to fetch the geometry as WKB and decode it directly,
+     *                false to use the WKT based decoding of postgis-jdbc.
+     */
+    public void setBinaryDecoding(boolean _binary) {
+        mBinaryDecoding = _binary;
+    }
+
+    /**
+     * Switches whether extractLayer() fetches the attributes along with the geometry.
+     *
+     * @param _extract True to fetch the attributes, false to fetch only id, type and geometry.
+     */
+    public void setAttributeExtraction(boolean _extract) {
+        mExtractAttributes = _extract;
+    }
 
     @Override
     public List<GeoObject> extractData(String _statement, boolean _keepConnectionOpen) {
         mList = new LinkedList<>();
         try {
-            /* Create a statement and execute a select query. */
-            Statement s = mConnection.createStatement();
-            ResultSet r = s.executeQuery(_statement);
-            while (r.next()) {
-                String id = r.getString("id");
-                int type = r.getInt("type");
-                String attr = r.getString("attr");
-
-                PGgeometry geom = (PGgeometry) r.getObject("geom");
-                switch (geom.getGeoType()) {
-                    case Geometry.POLYGON: {
-                        String wkt = geom.toString();
-                        net.postgis.jdbc.geometry.Polygon p = new net.postgis.jdbc.geometry.Polygon(wkt);
-                        if (p.numRings() >= 1) {
-                            Polygon poly = new Polygon();
-                            LinkedList<GeoObjectPart> list = new LinkedList<>();
-
-                            // Ring 0 --> main polygon ... rest should be holes
-                            LinearRing ring = p.getRing(0);
+            extract(mConnection, _statement, 0, _batch -> mList.addAll(_batch.asList()));
+            if(!_keepConnectionOpen) closeConnection();
+        } catch (
+                Exception _e) {
+            _e.printStackTrace();
+        }
+        return mList;
+    }
+
+    @Override
+    public void extractData(String _statement, int _fetchSize, IExtractionConsumer _consumer) {
+        try {
+            /* The driver only uses a server-side cursor (and honours the fetch size) outside of autocommit mode. */
+            boolean autoCommit = mConnection.getAutoCommit();
+            mConnection.setAutoCommit(false);
+            try {
+                extract(mConnection, _statement, _fetchSize, _consumer);
+                mConnection.commit();
+            } finally {
+                mConnection.setAutoCommit(autoCommit);
+            }
+        } catch (Exception _e) {
+            _e.printStackTrace();
+        }
+    }
+
+    /**
+     * The layer is queried with a prepared statement that is cached per pooled connection.
+     * Unless setAttributeExtraction() is switched on, NULL is selected instead of the attributes.
+     * The envelope and tolerance are bound as parameters, so repeated viewport queries skip parsing and planning
+     * on the server. Generalisation uses ST_SnapToGrid, which also drops the repeated points it creates.
+     * The statement is registered with the cancellation while it runs, errors caused by a cancellation are ignored.
+     */
+    @Override
+    public boolean extractLayer(String _layer, Rectangle _envelope, double _tolerance, int _fetchSize,
+                             IExtractionConsumer _consumer, Cancellation _cancellation) {
+        ConnectionPool pool = getPool();
+        Connection connection = null;
+        PreparedStatement s = null;
+        try {
+            connection = pool.borrow();
+            connection.setAutoCommit(false);
+
+            boolean generalise = _tolerance > 0;
+            String geom = generalise ? "ST_SnapToGrid(geom, ?)" : "geom";
+            String attr = mExtractAttributes ? "attr" : "NULL AS attr";
+            String sql = mBinaryDecoding ? "SELECT id, type, " + attr + ", ST_AsBinary(" + geom + ") AS wkb FROM " + _layer
+                    : "SELECT id, type, " + attr + ", " + geom + " AS geom FROM " + _layer;
+            if (_envelope != null) {
+                sql += " WHERE ST_Intersects(geom, ST_MakeEnvelope(?, ?, ?, ?))";
+            }
+            s = pool.prepare(connection, sql);
+            int parameter = 1;
+            if (generalise) {
+                s.setDouble(parameter++, _tolerance / mCoordinateFactor);
+            }
+            if (_envelope != null) {
+                /* The envelope is given in client coordinates. */
+                s.setDouble(parameter++, _envelope.getMinX() / mCoordinateFactor);
+                s.setDouble(parameter++, _envelope.getMinY() / mCoordinateFactor);
+                s.setDouble(parameter++, _envelope.getMaxX() / mCoordinateFactor);
+                s.setDouble(parameter, _envelope.getMaxY() / mCoordinateFactor);
+            }
+            s.setFetchSize(_fetchSize);
+            if (_cancellation != null && !_cancellation.register(s)) return false;
+            try (ResultSet r = s.executeQuery()) {
+                decode(r, _fetchSize, _consumer, _cancellation);
+            }
+            connection.commit();
+            /* decode() stops silently once the load is cancelled. */
+            return _cancellation == null || !_cancellation.isCancelled();
+        } catch (Exception _e) {
+            if (_cancellation == null || !_cancellation.isCancelled()) {
+                _e.printStackTrace();
+            }
+            return false;
+        } finally {
+            if (_cancellation != null && s != null) _cancellation.unregister(s);
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * The version combines the file node of the table, which changes when it is truncated or rewritten,
+     * with the number of inserted, updated and deleted rows from the statistics collector.
+     */
+    @Override
+    public long getLayerVersion(String _layer) {
+        ConnectionPool pool = getPool();
+        Connection connection = null;
+        try {
+            connection = pool.borrow();
+            PreparedStatement s = pool.prepare(connection, "SELECT c.relfilenode, s.n_tup_ins + s.n_tup_upd + s.n_tup_del"
+                    + " FROM pg_class c JOIN pg_stat_user_tables s ON s.relid = c.oid WHERE c.relname = ?");
+            s.setString(1, _layer);
+            try (ResultSet r = s.executeQuery()) {
+                if (!r.next()) return -1;
+                return (r.getLong(1) << 32) + r.getLong(2);
+            }
+        } catch (Exception _e) {
+            _e.printStackTrace();
+            return -1;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Only the given layer is queried, without a layer all of them are searched in drawing order. The queries are
+     * prepared statements that are cached per pooled connection. The id is bound without a type, so the database
+     * server converts it to the type of the id column and can use its index.
+     */
+    @Override
+    public String extractAttributes(String _layer, String _id, int _type) throws Exception {
+        ConnectionPool pool = getPool();
+        Connection connection = pool.borrow();
+        try {
+            for (String layer : _layer != null ? new String[]{_layer} : getLayers()) {
+                PreparedStatement s = pool.prepare(connection, "SELECT attr FROM " + layer
+                        + " WHERE id = ? AND type = ?");
+                s.setObject(1, _id, Types.OTHER);
+                s.setInt(2, _type);
+                try (ResultSet r = s.executeQuery()) {
+                    if (r.next()) return r.getString(1);
+                }
+            }
+            return null;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * The extent is taken from the table statistics (ST_EstimatedExtent). Layers without statistics
+     * fall back to ST_Extent. init() has to be called before using this method.
+     */
+    @Override
+    public Rectangle getExtent() {
+        Rectangle result = null;
+        for (String layer : getLayers()) {
+            Rectangle extent = queryExtent("SELECT ST_EstimatedExtent('" + layer + "', 'geom')");
+            if (extent == null) {
+                extent = queryExtent("SELECT ST_Extent(geom) FROM " + layer);
+            }
+            if (extent == null) continue;
+            if (result == null) {
+                result = extent;
+            } else {
+                result.add(extent);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs a query returning a single box and converts it into client coordinates.
+     *
+     * @param _statement Query returning a box2d or NULL.
+     * @return The box in client coordinates or null if there is none.
+     */
+    private Rectangle queryExtent(String _statement) {
+        try (Statement s = mConnection.createStatement()) {
+            ResultSet r = s.executeQuery("SELECT ST_XMin(e), ST_YMin(e), ST_XMax(e), ST_YMax(e) FROM ("
+                    + _statement + ") AS q(e)");
+            if (!r.next() || r.getObject(1) == null) return null;
+            double f = mCoordinateFactor;
+            Rectangle extent = new Rectangle((int) (r.getDouble(1) * f), (int) (r.getDouble(2) * f));
+            extent.add((int) (r.getDouble(3) * f), (int) (r.getDouble(4) * f));
+            return extent;
+        } catch (SQLException _e) {
+            /* e.g. a table without statistics */
+            return null;
+        }
+    }
+
+    /**
+     * Executes the given statement and decodes the rows according to mBinaryDecoding.
+     *
+     * @param _connection Connection the statement is executed on.
+     * @param _statement SQL Statement in String format.
+     * @param _fetchSize Number of rows fetched per round trip and size of the batches.
+     *                   0 fetches everything at once and delivers a single batch.
+     * @param _consumer  Consumer receiving the decoded features.
+     * @throws SQLException If the query fails.
+     */
+    private void extract(Connection _connection, String _statement, int _fetchSize, IExtractionConsumer _consumer)
+            throws SQLException {
+        if (mBinaryDecoding) {
+            /* Fetch the geometry as WKB and decode the bytes directly. */
+            _statement = "SELECT id, type, attr, ST_AsBinary(geom) AS wkb FROM (" + _statement + ") AS q";
+        }
+        /* Create a statement and execute a select query, both are closed even if decoding fails. */
+        try (Statement s = _connection.createStatement()) {
+            s.setFetchSize(_fetchSize);
+            try (ResultSet r = s.executeQuery(_statement)) {
+                decode(r, _fetchSize, _consumer, null);
+            }
+        }
+    }
+
+    /**
+     * Decodes all rows of the given ResultSet according to mBinaryDecoding.
+     * In binary mode the columns have to be id, type, attr and the WKB geometry, in this order,
+     * otherwise the columns are looked up by name.
+     * The decoded features are handed to the consumer in batches of _fetchSize features.
+     *
+     * @param _r         ResultSet to decode.
+     * @param _fetchSize Size of the batches. 0 delivers a single batch.
+     * @param _consumer  Consumer receiving the decoded features.
+     * @param _cancellation Cancellation checked between the rows, decoding stops once it is cancelled. May be null.
+     * @throws SQLException If a row can't be read.
+     */
+    private void decode(ResultSet _r, int _fetchSize, IExtractionConsumer _consumer, Cancellation _cancellation)
+            throws SQLException {
+        WKBReader reader = new WKBReader(mCoordinateFactor);
+        FeatureStore.Builder batch = new FeatureStore.Builder();
+        while (_r.next()) {
+            if (_cancellation != null && _cancellation.isCancelled()) return;
+            if (mBinaryDecoding) {
+                reader.read(batch, _r.getString(1), _r.getInt(2), _r.getString(3), _r.getBytes(4));
+            } else {
+                GeoObject obj = decodeText(_r);
+                if (obj != null) batch.add(obj);
+            }
+            if (_fetchSize > 0 && batch.size() >= _fetchSize) {
+                _consumer.consume(batch.build());
+                batch = new FeatureStore.Builder();
+            }
+        }
+        if (batch.size() > 0) _consumer.consume(batch.build());
+    }
+
+    /**
+     * Decodes the current row of the given ResultSet via the WKT representation of its PGgeometry.
+     *
+     * @param r ResultSet positioned on the row to decode.
+     * @return The decoded GeoObject or null if the geometry is empty or of an unsupported type.
+     * @throws SQLException If a column can't be read.
+     */
+    private GeoObject decodeText(ResultSet r) throws SQLException {
+        double f = mCoordinateFactor;
+        String id = r.getString("id");
+        int type = r.getInt("type");
+        String attr = r.getString("attr");
+
+        PGgeometry geom = (PGgeometry) r.getObject("geom");
+        if (geom == null) return null;
+        switch (geom.getGeoType()) {
+            case Geometry.POLYGON: {
+                String wkt = geom.toString();
+                net.postgis.jdbc.geometry.Polygon p = new net.postgis.jdbc.geometry.Polygon(wkt);
+                if (p.numRings() >= 1) {
+                    Polygon poly = new Polygon();
+                    LinkedList<GeoObjectPart> list = new LinkedList<>();
+
+                    // Ring 0 --> main polygon ... rest should be holes
+                    LinearRing ring = p.getRing(0);
+                    for (int i = 0; i < ring.numPoints(); i++) {
+                        net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
+                        poly.addPoint((int) (pPG.x * f), (int) (pPG.y * f));
+                    }
+
+                    GeoArea area = new GeoArea(poly);
+                    list.add(area);
+
+                    if (p.numRings() > 1) {
+                        for (int j = 1; j < p.numRings(); j++) {
+                            ring = p.getRing(j);
+                            poly = new Polygon();
                             for (int i = 0; i < ring.numPoints(); i++) {
                                 net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
-                                poly.addPoint((int) pPG.x, (int) pPG.y);
+                                poly.addPoint((int) (pPG.x * f), (int) (pPG.y * f));
                             }
+                            area.addHole(new GeoArea(poly));
+                        }
+                    }
 
-                            GeoArea area = new GeoArea(poly);
-                            list.add(area);
-
-                            if (p.numRings() > 1) {
-                                for (int j = 1; j < p.numRings(); j++) {
-                                    ring = p.getRing(j);
-                                    poly = new Polygon();
-                                    for (int i = 0; i < ring.numPoints(); i++) {
-                                        net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
-                                        poly.addPoint((int) pPG.x, (int) pPG.y);
-                                    }
-                                    area.addHole(new GeoArea(poly));
-                                }
-                            }
+                    return new GeoObject(id, type, "POLYGON", attr, list);
 
-                            mList.add(new GeoObject(id, type, "POLYGON", attr, list));
+                }
+            }
+            break;
+            case Geometry.MULTIPOLYGON: {
+                String wkt = geom.toString();
+                net.postgis.jdbc.geometry.MultiPolygon p = new net.postgis.jdbc.geometry.MultiPolygon(wkt);
+                if (p.numPolygons() >= 1) {
+                    Polygon poly;
+                    LinkedList<GeoObjectPart> list = new LinkedList<>();
+                    for (int j = 0; j < p.numPolygons(); j++) { // start going through all polygons of this multipolygon
+                        poly = new Polygon();
 
-                        }
-                    }
-                    break;
-                    case Geometry.MULTIPOLYGON: {
-                        String wkt = geom.toString();
-                        net.postgis.jdbc.geometry.MultiPolygon p = new net.postgis.jdbc.geometry.MultiPolygon(wkt);
-                        if (p.numPolygons() >= 1) {
-                            Polygon poly;
-                            LinkedList<GeoObjectPart> list = new LinkedList<>();
-                            for (int j = 0; j < p.numPolygons(); j++) { // start going through all polygons of this multipolygon
-                                poly = new Polygon();
+                        net.postgis.jdbc.geometry.Polygon mainPoly = p.getPolygon(j);
+                        LinearRing ring = mainPoly.getRing(0);
+                        for (int i = 0; i < ring.numPoints(); i++) { // Start going through the first ring (->mainpoly) of the polygon
+                            net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
+                            poly.addPoint((int) (pPG.x * f), (int) (pPG.y * f));
+                        } // Stop going through the first ring (->mainpoly) of the polygon
+
+                        GeoArea area = new GeoArea(poly); //Save the main poly as area
+                        list.add(area);
 
-                                net.postgis.jdbc.geometry.Polygon mainPoly = p.getPolygon(j);
-                                LinearRing ring = mainPoly.getRing(0);
-                                for (int i = 0; i < ring.numPoints(); i++) { // Start going through the first ring (->mainpoly) of the polygon
+                        if (mainPoly.numRings() > 1) {
+                            for (int l = 1; l < mainPoly.numRings(); l++) { // Go through the other rings (holes in mainpoly)
+                                ring = mainPoly.getRing(l);
+                                poly = new Polygon();
+                                for (int i = 0; i < ring.numPoints(); i++) {
                                     net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
-                                    poly.addPoint((int) pPG.x, (int) pPG.y);
-                                } // Stop going through the first ring (->mainpoly) of the polygon
-
-                                GeoArea area = new GeoArea(poly); //Save the main poly as area
-                                list.add(area);
-
-                                if (mainPoly.numRings() > 1) {
-                                    for (int l = 1; l < mainPoly.numRings(); l++) { // Go through the other rings (holes in mainpoly)
-                                        ring = mainPoly.getRing(l);
-                                        poly = new Polygon();
-                                        for (int i = 0; i < ring.numPoints(); i++) {
-                                            net.postgis.jdbc.geometry.Point pPG = ring.getPoint(i);
-                                            poly.addPoint((int) pPG.x, (int) pPG.y);
-                                        }
-                                        area.addHole(new GeoArea(poly));
-                                    }
+                                    poly.addPoint((int) (pPG.x * f), (int) (pPG.y * f));
                                 }
-                            }// stop going through all polygons of this multipolygon
+                                area.addHole(new GeoArea(poly));
+                            }
+                        }
+                    }// stop going through all polygons of this multipolygon
 
-                            mList.add(new GeoObject(id, type, "MULTIPOLYGON", attr, list));
+                    return new GeoObject(id, type, "MULTIPOLYGON", attr, list);
 
-                        }
-                    }
-                    break;
-                    case Geometry.POINT: {
-                        String wkt = geom.toString();
-                        net.postgis.jdbc.geometry.Point p = new net.postgis.jdbc.geometry.Point(wkt);
-                        LinkedList<GeoObjectPart> list = new LinkedList<>();
-                        list.add(new GeoPoint(new Point((int) p.x, (int) p.y)));
-                        mList.add(new GeoObject(id, type, "POINT", attr, list));
-                    }
-                    break;
-                    case Geometry.LINESTRING:
-                        String wkt = geom.toString();
-                        net.postgis.jdbc.geometry.LineString lineString = new net.postgis.jdbc.geometry.LineString(wkt);
-                        List<Point> list = new ArrayList<>();
-                        for (int i = 0; i < lineString.numPoints(); i++) {
-                            net.postgis.jdbc.geometry.Point p = lineString.getPoint(i);
-                            list.add(new Point((int) p.getX(), (int) p.getY()));
-                        }
-                        GeoLine line = new GeoLine(list);
-                        ArrayList<GeoObjectPart> geoList = new ArrayList();
-                        geoList.add(line);
-                        mList.add(new GeoObject(id, type, "LINE", attr, geoList));
-                        break;
                 }
             }
-            s.close();
-            if(!_keepConnectionOpen) mConnection.close();
-        } catch (
-                Exception _e) {
-            _e.printStackTrace();
+            break;
+            case Geometry.POINT: {
+                String wkt = geom.toString();
+                net.postgis.jdbc.geometry.Point p = new net.postgis.jdbc.geometry.Point(wkt);
+                LinkedList<GeoObjectPart> list = new LinkedList<>();
+                list.add(new GeoPoint(new Point((int) (p.x * f), (int) (p.y * f))));
+                return new GeoObject(id, type, "POINT", attr, list);
+            }
+            case Geometry.LINESTRING:
+                String wkt = geom.toString();
+                net.postgis.jdbc.geometry.LineString lineString = new net.postgis.jdbc.geometry.LineString(wkt);
+                List<Point> list = new ArrayList<>();
+                for (int i = 0; i < lineString.numPoints(); i++) {
+                    net.postgis.jdbc.geometry.Point p = lineString.getPoint(i);
+                    list.add(new Point((int) (p.getX() * f), (int) (p.getY() * f)));
+                }
+                GeoLine line = new GeoLine(list);
+                ArrayList<GeoObjectPart> geoList = new ArrayList();
+                geoList.add(line);
+                return new GeoObject(id, type, "LINE", attr, geoList);
         }
-        return mList;
+        return null;
     }
 
+    /**
+     * Gives the connection back to the pool of the database. The physical connection stays open for reuse.
+     */
     @Override
     public void closeConnection() {
-        try {
-            mConnection.close();
-        } catch (SQLException _e) {
-            _e.printStackTrace();
-        }
+        getPool().release(mConnection);
+        mConnection = null;
     }
 }
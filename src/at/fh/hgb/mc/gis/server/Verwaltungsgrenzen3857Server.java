@@ -1,12 +1,7 @@
 package at.fh.hgb.mc.gis.server;
 
-
 import at.fh.hgb.mc.gis.feature.ADrawingContext;
 import at.fh.hgb.mc.gis.client.VerwaltungsgrenzenDrawingContext;
-import org.postgresql.PGConnection;
-import org.postgresql.util.PGobject;
-
-import java.sql.DriverManager;
 
 /**
  * This class extends the OSMServer class to provide the missing IGISServer functionality.
@@ -14,26 +9,13 @@ import java.sql.DriverManager;
 public class Verwaltungsgrenzen3857Server extends OSMServer {
 
     @Override
-    public boolean init() {
-        try {
-            /* Load the JDBC driver and establish a connection. */
-            Class.forName("org.postgresql.Driver");
-            String url =
-                    "jdbc:postgresql://localhost:5432/Verwaltungsgrenzen_3857";
-            mConnection = DriverManager.getConnection(url, "geo", "geo");
-            /* Add the geometry types to the connection. */
-            PGConnection c = (PGConnection) mConnection;
-            // alternativ org.postgis.PGgeometry.class
-            c.addDataType("geometry",
-                    (Class<? extends PGobject>) Class.forName("net.postgis.jdbc.PGgeometry"));
-            // alterantiv org.postgis.PGbox2d.class
-            c.addDataType("box2d",
-                    (Class<? extends PGobject>) Class.forName("net.postgis.jdbc.PGbox2d"));
-            return true;
-        } catch (Exception _e) {
-            _e.printStackTrace();
-            return false;
-        }
+    protected String getDatabaseUrl() {
+        return "jdbc:postgresql://localhost:5432/Verwaltungsgrenzen_3857";
+    }
+
+    @Override
+    public String[] getLayers() {
+        return new String[]{"bundeslaender"};
     }
 
     @Override
@@ -41,5 +23,4 @@ public class Verwaltungsgrenzen3857Server extends OSMServer {
         return new VerwaltungsgrenzenDrawingContext();
     }
 
-
 }
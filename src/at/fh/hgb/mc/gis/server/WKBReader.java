@@ -0,0 +1,222 @@
+package at.fh.hgb.mc.gis.server;
+
+import at.fh.hgb.mc.gis.feature.*;
+
+/**
+ * This class decodes geometries in the well-known binary format (WKB), as returned by ST_AsBinary(geom),
+ * directly into the columns of a FeatureStore. No intermediate WKT string, postgis-jdbc geometry objects or
+ * GeoObjects are created.
+ * Extended WKB (SRID, Z and M flags) as well as ISO WKB (type codes + 1000/2000/3000) is understood,
+ * additional ordinates are skipped.
+ */
+public class WKBReader {
+    /**
+     * WKB type code of a point.
+     */
+    private static final int WKB_POINT = 1;
+    /**
+     * WKB type code of a line string.
+     */
+    private static final int WKB_LINESTRING = 2;
+    /**
+     * WKB type code of a polygon.
+     */
+    private static final int WKB_POLYGON = 3;
+    /**
+     * WKB type code of a multi polygon.
+     */
+    private static final int WKB_MULTIPOLYGON = 6;
+    /**
+     * EWKB flag indicating a Z ordinate.
+     */
+    private static final int EWKB_Z = 0x80000000;
+    /**
+     * EWKB flag indicating a M ordinate.
+     */
+    private static final int EWKB_M = 0x40000000;
+    /**
+     * EWKB flag indicating an embedded SRID.
+     */
+    private static final int EWKB_SRID = 0x20000000;
+
+    /**
+     * Factor every coordinate is multiplied with before it is truncated to an integer.
+     */
+    private final double mFactor;
+    /**
+     * Buffer currently being decoded.
+     */
+    private byte[] mData;
+    /**
+     * Current read position within mData.
+     */
+    private int mPos;
+    /**
+     * Flag indicating whether the current geometry is stored in little endian byte order.
+     */
+    private boolean mLittleEndian;
+    /**
+     * Number of ordinates per point of the current geometry (2 to 4).
+     */
+    private int mDimension;
+
+    /**
+     * Constructs a new WKBReader.
+     *
+     * @param _factor Factor every coordinate is multiplied with before it is converted to an integer.
+     */
+    public WKBReader(double _factor) {
+        mFactor = _factor;
+    }
+
+    /**
+     * Decodes the given WKB buffer and adds it as new feature to the given FeatureStore.Builder.
+     *
+     * @param _builder Builder the feature is added to.
+     * @param _id      Id of the new feature.
+     * @param _type    Type of the new feature.
+     * @param _attr    Attributes of the new feature.
+     * @param _wkb     Geometry in the well-known binary format.
+     * @return True if a feature has been added, false if the geometry is empty or of an unsupported type.
+     */
+    public boolean read(FeatureStore.Builder _builder, String _id, int _type, String _attr, byte[] _wkb) {
+        if (_wkb == null) return false;
+        mData = _wkb;
+        mPos = 0;
+
+        switch (readHeader()) {
+            case WKB_POLYGON: {
+                _builder.beginFeature(_id, _type, FeatureStore.KIND_POLYGON, _attr);
+                readPolygon(_builder);
+                break;
+            }
+            case WKB_MULTIPOLYGON: {
+                _builder.beginFeature(_id, _type, FeatureStore.KIND_MULTIPOLYGON, _attr);
+                int numPolygons = readInt();
+                for (int j = 0; j < numPolygons; j++) {
+                    readHeader();
+                    readPolygon(_builder);
+                }
+                break;
+            }
+            case WKB_POINT: {
+                int x = readOrdinate();
+                int y = readOrdinate();
+                skipOrdinates();
+                _builder.beginFeature(_id, _type, FeatureStore.KIND_POINT, _attr);
+                _builder.beginPart();
+                _builder.beginRing();
+                _builder.addVertex(x, y);
+                return true;
+            }
+            case WKB_LINESTRING: {
+                int numPoints = readInt();
+                if (numPoints == 0) return false;
+                _builder.beginFeature(_id, _type, FeatureStore.KIND_LINE, _attr);
+                _builder.beginPart();
+                readRing(_builder, numPoints);
+                return true;
+            }
+            default:
+                return false;
+        }
+        if (_builder.hasParts()) return true;
+        _builder.discardFeature();
+        return false;
+    }
+
+    /**
+     * Reads a polygon body (without header) and adds it as new part to the current feature of the given builder.
+     * Ring 0 is the main polygon, all other rings are its holes.
+     *
+     * @param _builder Builder the part is added to.
+     */
+    private void readPolygon(FeatureStore.Builder _builder) {
+        int numRings = readInt();
+        if (numRings < 1) return;
+
+        _builder.beginPart();
+        for (int j = 0; j < numRings; j++) {
+            readRing(_builder, readInt());
+        }
+    }
+
+    /**
+     * Reads the points of a linear ring or line string as new ring of the current part of the given builder.
+     *
+     * @param _builder   Builder the ring is added to.
+     * @param _numPoints Number of points to read.
+     */
+    private void readRing(FeatureStore.Builder _builder, int _numPoints) {
+        _builder.beginRing();
+        for (int i = 0; i < _numPoints; i++) {
+            int x = readOrdinate();
+            int y = readOrdinate();
+            skipOrdinates();
+            _builder.addVertex(x, y);
+        }
+    }
+
+    /**
+     * Reads the byte order and type of a (sub-)geometry and skips an embedded SRID.
+     *
+     * @return The two-dimensional WKB type code of the geometry.
+     */
+    private int readHeader() {
+        mLittleEndian = mData[mPos++] == 1;
+        int type = readInt();
+        mDimension = 2;
+        if ((type & EWKB_Z) != 0) mDimension++;
+        if ((type & EWKB_M) != 0) mDimension++;
+        if ((type & EWKB_SRID) != 0) readInt();
+        type &= 0x0FFFFFFF;
+        if (type >= 3000) {
+            mDimension = 4;
+        } else if (type >= 1000) {
+            mDimension = 3;
+        }
+        return type % 1000;
+    }
+
+    /**
+     * Skips the Z and M ordinates of the current point, if there are any.
+     */
+    private void skipOrdinates() {
+        mPos += (mDimension - 2) * 8;
+    }
+
+    /**
+     * Reads a double ordinate and converts it into an integer coordinate.
+     *
+     * @return The converted coordinate.
+     */
+    private int readOrdinate() {
+        return (int) (Double.longBitsToDouble(readLong()) * mFactor);
+    }
+
+    /**
+     * Reads a 32 bit integer in the current byte order.
+     *
+     * @return The read value.
+     */
+    private int readInt() {
+        byte[] d = mData;
+        int p = mPos;
+        mPos += 4;
+        if (mLittleEndian) {
+            return (d[p] & 0xFF) | (d[p + 1] & 0xFF) << 8 | (d[p + 2] & 0xFF) << 16 | (d[p + 3] & 0xFF) << 24;
+        }
+        return (d[p] & 0xFF) << 24 | (d[p + 1] & 0xFF) << 16 | (d[p + 2] & 0xFF) << 8 | (d[p + 3] & 0xFF);
+    }
+
+    /**
+     * Reads a 64 bit integer in the current byte order.
+     *
+     * @return The read value.
+     */
+    private long readLong() {
+        long a = readInt() & 0xFFFFFFFFL;
+        long b = readInt() & 0xFFFFFFFFL;
+        return mLittleEndian ? (b << 32 | a) : (a << 32 | b);
+    }
+}